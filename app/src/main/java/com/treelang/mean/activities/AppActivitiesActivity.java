@@ -1,16 +1,13 @@
 package com.treelang.mean.activities;
 
+import android.app.ActivityManager;
 import android.content.ComponentName;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ShortcutInfo;
 import android.content.pm.ShortcutManager;
-import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.drawable.Drawable;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Icon;
 import android.os.Build;
 import android.os.Bundle;
@@ -18,7 +15,6 @@ import android.widget.Toast;
 
 import androidx.activity.ComponentActivity;
 import androidx.activity.EdgeToEdge;
-import androidx.core.content.res.ResourcesCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -26,11 +22,18 @@ import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.treelang.mean.R;
 import com.treelang.mean.adapters.ActivityListAdapter;
+import com.treelang.mean.utils.AppUtils;
+import com.treelang.mean.utils.IconCache;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AppActivitiesActivity extends ComponentActivity {
+    // 读取活动列表和名称的后台线程
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
     private ActivityListAdapter adapter;
     private String packageName;
     private String appName;
@@ -63,27 +66,45 @@ public class AppActivitiesActivity extends ComponentActivity {
         loadActivities();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loadExecutor.shutdownNow();
+    }
+
+    // 在后台读取活动列表并预先解析名称，绑定和比较时只读缓存
     private void loadActivities() {
-        try {
-            PackageManager pm = getPackageManager();
-            List<ActivityInfo> activities = Arrays.asList(pm.getPackageInfo(packageName, PackageManager.GET_ACTIVITIES).activities);
-            adapter.submitList(activities);
-            // 更新toolbar标题，显示活动数量
-            MaterialToolbar toolbar = findViewById(R.id.toolbar);
-            toolbar.setTitle(appName + " - Activities (" + activities.size() + ")");
-        } catch (PackageManager.NameNotFoundException e) {
-            Toast.makeText(this, "Can not load activities: " + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
+        PackageManager pm = getPackageManager();
+        loadExecutor.execute(() -> {
+            try {
+                ActivityInfo[] infos = pm.getPackageInfo(packageName, PackageManager.GET_ACTIVITIES).activities;
+                List<ActivityInfo> activities = infos != null ? Arrays.asList(infos) : Collections.emptyList();
+                for (ActivityInfo activity : activities) {
+                    AppUtils.getComponentLabel(pm, activity);
+                }
+                runOnUiThread(() -> {
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    adapter.submitList(activities);
+                    // 更新toolbar标题，显示活动数量
+                    MaterialToolbar toolbar = findViewById(R.id.toolbar);
+                    toolbar.setTitle(appName + " - Activities (" + activities.size() + ")");
+                });
+            } catch (PackageManager.NameNotFoundException e) {
+                runOnUiThread(() -> Toast.makeText(this, "Can not load activities: " + e.getMessage(), Toast.LENGTH_LONG).show());
+            }
+        });
     }
 
     private void showActivityOptions(ActivityInfo activity) {
         if (!activity.exported) {
-            new MaterialAlertDialogBuilder(this).setTitle("Unexported Activities").setMessage("This activity is not exported and cannot be accessed directly\n\n" + "Name: " + activity.name + "\n" + "Label: " + activity.loadLabel(getPackageManager())).setPositiveButton("Confirm", null).show();
+            new MaterialAlertDialogBuilder(this).setTitle("Unexported Activities").setMessage("This activity is not exported and cannot be accessed directly\n\n" + "Name: " + activity.name + "\n" + "Label: " + AppUtils.getComponentLabel(getPackageManager(), activity)).setPositiveButton("Confirm", null).show();
             return;
         }
 
         String[] options = {"Launch", "Create Shortcut"};
-        new MaterialAlertDialogBuilder(this).setTitle(activity.loadLabel(getPackageManager())).setItems(options, (dialog, which) -> {
+        new MaterialAlertDialogBuilder(this).setTitle(AppUtils.getComponentLabel(getPackageManager(), activity)).setItems(options, (dialog, which) -> {
             switch (which) {
                 case 0:
                     launchActivity(activity);
@@ -119,28 +140,13 @@ public class AppActivitiesActivity extends ComponentActivity {
                 shortcutIntent.addCategory(Intent.CATEGORY_LAUNCHER);
                 shortcutIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
 
-                // Create icon for the shortcut - try activity icon first, then app icon
+                // Create icon for the shortcut - loadIcon falls back to the app icon by itself.
+                // Rasterized at the launcher icon size, the cached list icons are too small
                 Icon icon;
                 try {
-                    PackageManager pm = getPackageManager();
-                    Drawable drawable = null;
-
-                    // Try to get activity-specific icon first
-                    if (activity.getIconResource() != 0) {
-                        try {
-                            Resources resources = pm.getResourcesForApplication(activity.packageName);
-                            drawable = ResourcesCompat.getDrawable(resources, activity.getIconResource(), null);
-                        } catch (Exception e) {
-                            // Activity icon failed, will try app icon below
-                        }
-                    }
-
-                    // If no activity icon, use app icon
-                    if (drawable == null) {
-                        drawable = pm.getApplicationIcon(activity.packageName);
-                    }
-
-                    Bitmap bitmap = drawableToBitmap(drawable);
+                    ActivityManager activityManager = getSystemService(ActivityManager.class);
+                    Bitmap bitmap = IconCache.rasterize(activity.loadIcon(getPackageManager()),
+                            activityManager.getLauncherLargeIconSize());
                     icon = Icon.createWithBitmap(bitmap);
                 } catch (Exception e) {
                     // Final fallback to launcher icon
@@ -148,7 +154,7 @@ public class AppActivitiesActivity extends ComponentActivity {
                 }
 
                 // Build the shortcut info
-                String shortLabel = activity.loadLabel(getPackageManager()).toString();
+                String shortLabel = AppUtils.getComponentLabel(getPackageManager(), activity);
                 if (shortLabel.isEmpty()) {
                     shortLabel = activity.name.substring(activity.name.lastIndexOf('.') + 1);
                 }
@@ -175,21 +181,4 @@ public class AppActivitiesActivity extends ComponentActivity {
         }
     }
 
-    private Bitmap drawableToBitmap(Drawable drawable) {
-        if (drawable instanceof BitmapDrawable) {
-            return ((BitmapDrawable) drawable).getBitmap();
-        }
-
-        int width = drawable.getIntrinsicWidth();
-        int height = drawable.getIntrinsicHeight();
-        width = width > 0 ? width : 1;
-        height = height > 0 ? height : 1;
-
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-        drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-        drawable.draw(canvas);
-        return bitmap;
-    }
-
 }
\ No newline at end of file
@@ -1,58 +1,78 @@
 package com.treelang.mean.activities;
 
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.text.TextUtils;
 import android.view.View;
-import android.widget.TextView;
 
 import androidx.activity.ComponentActivity;
 import androidx.activity.EdgeToEdge;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.floatingactionbutton.ExtendedFloatingActionButton;
 import com.google.android.material.snackbar.Snackbar;
-import com.google.android.material.textfield.TextInputEditText;
+import com.google.android.material.textfield.MaterialAutoCompleteTextView;
 import com.treelang.mean.R;
+import com.treelang.mean.adapters.CommandSuggestionAdapter;
+import com.treelang.mean.adapters.ConsoleAdapter;
 import com.treelang.mean.utils.AdbHelper;
-
-import java.util.concurrent.ConcurrentLinkedQueue;
+import com.treelang.mean.utils.CommandHistory;
+import com.treelang.mean.utils.FrameLineBatcher;
+import com.treelang.mean.utils.OutputPump;
+import com.treelang.mean.utils.ShellExecutor;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ExecCommandActivity extends ComponentActivity {
     // Constants
-    private static final int BATCH_UPDATE_DELAY = 50;
     private static final String COMMAND_PREFIX = "$ ";
     private static final String NEWLINE = "\n";
+    // 控制台最多保留的行数，超出后丢弃最早的行
+    private static final int MAX_CONSOLE_LINES = 100_000;
+    // 复制到剪贴板的最大字符数，剪贴板内容经过 Binder 传递，过大会失败
+    private static final int MAX_COPY_CHARS = 256 * 1024;
 
     // UI Components
-    private TextInputEditText commandInput;
+    private MaterialAutoCompleteTextView commandInput;
     private MaterialToolbar materialToolbar;
-    private TextView outputText;
+    private RecyclerView outputList;
+    private ConsoleAdapter consoleAdapter;
     private ExtendedFloatingActionButton extendedFab;
     private View progressIndicator;
 
     // State management
     private final AtomicBoolean isExecuting = new AtomicBoolean(false);
-    private volatile Process currentProcess;
-
-    // Batch update mechanism - using thread-safe collections
-    private final Handler batchUpdateHandler = new Handler(Looper.getMainLooper());
-    private final ConcurrentLinkedQueue<String> pendingOutputs = new ConcurrentLinkedQueue<>();
-
-    private final Runnable batchUpdateRunnable = () -> {
-        if (!pendingOutputs.isEmpty()) {
-            StringBuilder batch = new StringBuilder();
-            String output;
-            while ((output = pendingOutputs.poll()) != null) {
-                batch.append(output);
-            }
-            outputText.append(batch.toString());
-        }
-    };
+    // 每次执行加一，停止后才到达的回调不会影响之后执行的命令；只在主线程中访问
+    private int executionId;
+    // 正在执行的命令，取消时会结束其进程
+    private volatile ShellExecutor.CommandFuture currentCommand;
+    // 执行过的命令，跨启动保留，用于输入补全
+    private CommandHistory commandHistory;
+
+    // 选择保存输出的文件后执行命令
+    private final ActivityResultLauncher<String> saveOutputLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("text/plain"), uri -> {
+                if (uri != null) {
+                    executeCommand(uri);
+                }
+            });
+
+    // Batch update mechanism - output lines are handed to the console once per frame
+    private FrameLineBatcher outputBatcher;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -76,14 +96,49 @@ public class ExecCommandActivity extends ComponentActivity {
     private void initializeViews() {
         materialToolbar = findViewById(R.id.toolbar);
         commandInput = findViewById(R.id.command_input);
-        outputText = findViewById(R.id.output_text);
+        commandHistory = CommandHistory.getInstance(this);
+        // 在历史自己的线程中预先读取，输入时查找只访问内存
+        commandHistory.load();
+        commandInput.setAdapter(new CommandSuggestionAdapter(this, commandHistory));
+        outputList = findViewById(R.id.output_list);
+        consoleAdapter = new ConsoleAdapter(MAX_CONSOLE_LINES);
+        outputList.setLayoutManager(new LinearLayoutManager(this));
+        // 输出持续追加时不需要条目动画
+        outputList.setItemAnimator(null);
+        outputList.setAdapter(consoleAdapter);
+        outputBatcher = new FrameLineBatcher(MAX_CONSOLE_LINES, this::showOutputLines);
         extendedFab = findViewById(R.id.extended_fab);
         progressIndicator = findViewById(R.id.progress_indicator);
     }
 
     private void setupClickListeners() {
-        extendedFab.setOnClickListener(v -> executeCommand());
+        extendedFab.setOnClickListener(v -> executeCommand(null));
         materialToolbar.setNavigationOnClickListener(v -> finish());
+        materialToolbar.inflateMenu(R.menu.exec_command_menu);
+        materialToolbar.setOnMenuItemClickListener(item -> {
+            if (item.getItemId() == R.id.action_run_and_save) {
+                chooseOutputFile();
+                return true;
+            }
+            if (item.getItemId() == R.id.action_copy_output) {
+                copyOutput();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void chooseOutputFile() {
+        if (TextUtils.isEmpty(getCommandText())) {
+            showSnackbar("Please enter a command to execute");
+            return;
+        }
+        if (isExecuting.get()) {
+            showSnackbar("The command is being executed, do not do anything else");
+            return;
+        }
+        String time = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss", Locale.getDefault()).format(new Date());
+        saveOutputLauncher.launch("command_output_" + time + ".txt");
     }
 
     private void showWarning() {
@@ -96,7 +151,8 @@ public class ExecCommandActivity extends ComponentActivity {
                 .show();
     }
 
-    private void executeCommand() {
+    // saveTo 不为 null 时全部输出同时写入该文件
+    private void executeCommand(Uri saveTo) {
         String command = getCommandText();
         if (TextUtils.isEmpty(command)) {
             showSnackbar("Please enter a command to execute");
@@ -108,8 +164,10 @@ public class ExecCommandActivity extends ComponentActivity {
             return;
         }
 
-        appendOutputBatched(COMMAND_PREFIX + command + NEWLINE);
-        executeAdbCommand(command);
+        appendLinesBatched(Arrays.asList((COMMAND_PREFIX + command).split(NEWLINE)));
+        commandInput.dismissDropDown();
+        commandHistory.record(command);
+        executeAdbCommand(command, saveTo);
     }
 
     private String getCommandText() {
@@ -118,51 +176,100 @@ public class ExecCommandActivity extends ComponentActivity {
 
     private boolean tryStartExecution() {
         if (isExecuting.compareAndSet(false, true)) {
+            executionId++;
             setExecutingUI(true);
             return true;
         }
         return false;
     }
 
-    private void executeAdbCommand(String command) {
-        AdbHelper.executeShellCommandAsync(command, new AdbHelper.AdbCommandListener() {
+    private void executeAdbCommand(String command, Uri saveTo) {
+        AdbHelper.AdbCommandListener listener = createCommandListener(saveTo != null);
+        if (saveTo != null) {
+            // 输出逐行写入文件，不会丢行；界面只显示控制台保留的最近部分
+            currentCommand = AdbHelper.teeShellCommandToUri(this, command, saveTo, listener);
+        } else {
+            // 输入的命令可能持续大量输出，来不及显示时丢弃较早的行，避免阻塞命令
+            currentCommand = AdbHelper.executeShellCommandAsync(command, OutputPump.Overflow.DROP_OLDEST, listener);
+        }
+    }
+
+    private AdbHelper.AdbCommandListener createCommandListener(boolean savingOutput) {
+        int id = executionId;
+        return new AdbHelper.AdbCommandListener() {
             @Override
             public void onCommandOutput(String output) {
-                appendOutputBatched(output + NEWLINE);
+                appendLineBatched(output);
             }
 
             @Override
             public void onCommandComplete(int exitCode) {
                 runOnUiThread(() -> {
+                    if (!isCurrentExecution(id)) {
+                        return;
+                    }
                     flushPendingOutput();
-                    appendOutputBatched(NEWLINE + "[exit code:" + exitCode + "]" + NEWLINE);
+                    appendLinesBatched(Arrays.asList("", "[exit code:" + exitCode + "]"));
                     finishExecution();
+                    if (savingOutput) {
+                        showSnackbar("Output saved to file");
+                    }
                 });
             }
 
             @Override
             public void onCommandError(Exception e) {
+                // 手动停止时 stopCommand 已经更新了界面；保存输出时文件已经写完并关闭
+                if (e instanceof CancellationException) {
+                    if (savingOutput) {
+                        runOnUiThread(() -> {
+                            // 离开界面时取消的命令不再提示
+                            if (!isDestroyed()) {
+                                showSnackbar("Stopped, output saved to file");
+                            }
+                        });
+                    }
+                    return;
+                }
                 runOnUiThread(() -> {
+                    if (!isCurrentExecution(id)) {
+                        // 停止后保存文件失败，只提示，不改动之后执行的命令的界面
+                        showSnackbar("Execution error: " + e.getMessage());
+                        return;
+                    }
                     flushPendingOutput();
-                    appendOutputBatched(NEWLINE + "[error:" + e.getMessage() + "]" + NEWLINE);
+                    appendLinesBatched(Arrays.asList("", "[error:" + e.getMessage() + "]"));
                     finishExecution();
                     showSnackbar("Execution error: " + e.getMessage());
                 });
             }
-        });
+        };
+    }
+
+    private boolean isCurrentExecution(int id) {
+        return id == executionId && isExecuting.get();
     }
 
-    private void appendOutputBatched(String text) {
-        pendingOutputs.offer(text);
+    private void appendLineBatched(String line) {
+        outputBatcher.add(line);
+    }
 
-        // Schedule batch update
-        batchUpdateHandler.removeCallbacks(batchUpdateRunnable);
-        batchUpdateHandler.postDelayed(batchUpdateRunnable, BATCH_UPDATE_DELAY);
+    private void appendLinesBatched(List<String> lines) {
+        outputBatcher.addAll(lines);
     }
 
     private void flushPendingOutput() {
-        batchUpdateHandler.removeCallbacks(batchUpdateRunnable);
-        batchUpdateRunnable.run();
+        outputBatcher.flush();
+    }
+
+    // 每帧最多回调一次
+    private void showOutputLines(List<String> lines) {
+        // 已经在底部时跟随新输出滚动，用户向上翻看时保持位置
+        boolean followTail = !outputList.canScrollVertically(1);
+        consoleAdapter.appendLines(lines);
+        if (followTail) {
+            outputList.scrollToPosition(consoleAdapter.getItemCount() - 1);
+        }
     }
 
     private void finishExecution() {
@@ -171,7 +278,7 @@ public class ExecCommandActivity extends ComponentActivity {
     }
 
     private void setExecutingUI(boolean executing) {
-        extendedFab.setEnabled(!executing);
+        // 执行期间按钮变为停止，需要保持可点击，只禁用输入框
         commandInput.setEnabled(!executing);
         progressIndicator.setVisibility(executing ? View.VISIBLE : View.GONE);
 
@@ -182,21 +289,39 @@ public class ExecCommandActivity extends ComponentActivity {
         } else {
             extendedFab.setText("Run");
             extendedFab.setIconResource(R.drawable.baseline_play_arrow_24);
-            extendedFab.setOnClickListener(v -> executeCommand());
+            extendedFab.setOnClickListener(v -> executeCommand(null));
         }
     }
 
     private void stopCommand() {
-        Process process = currentProcess;
-        if (process != null && process.isAlive()) {
-            process.destroyForcibly();
+        ShellExecutor.CommandFuture command = currentCommand;
+        if (command != null) {
+            command.cancel(true);
         }
         finishExecution();
         showSnackbar("The command has been stopped");
     }
 
+    // 一行一行选择只能复制单行，这里复制控制台中保留的全部输出，过长时只复制最近的部分
+    private void copyOutput() {
+        int lineCount = consoleAdapter.getItemCount();
+        if (lineCount == 0) {
+            showSnackbar("There is no output to copy");
+            return;
+        }
+        String text = consoleAdapter.getRecentText(MAX_COPY_CHARS);
+        ClipboardManager clipboard = getSystemService(ClipboardManager.class);
+        clipboard.setPrimaryClip(ClipData.newPlainText("Command output", text));
+        int copied = text.isEmpty() ? 0 : text.split(NEWLINE, -1).length;
+        if (copied < lineCount) {
+            showSnackbar("Copied the last " + copied + " lines, use \"Run and save output\" for everything");
+        } else {
+            showSnackbar("Output copied to clipboard");
+        }
+    }
+
     private void showSnackbar(String message) {
-        Snackbar.make(outputText, message, Snackbar.LENGTH_SHORT).show();
+        Snackbar.make(outputList, message, Snackbar.LENGTH_SHORT).show();
     }
 
     @Override
@@ -206,10 +331,10 @@ public class ExecCommandActivity extends ComponentActivity {
     }
 
     private void cleanup() {
-        batchUpdateHandler.removeCallbacks(batchUpdateRunnable);
-        Process process = currentProcess;
-        if (process != null && process.isAlive()) {
-            process.destroyForcibly();
+        outputBatcher.cancel();
+        ShellExecutor.CommandFuture command = currentCommand;
+        if (command != null) {
+            command.cancel(true);
         }
     }
 }
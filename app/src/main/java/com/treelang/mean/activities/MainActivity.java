@@ -4,6 +4,7 @@ import static com.treelang.mean.utils.AdbHelper.executorService;
 
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -32,13 +33,13 @@ import androidx.activity.OnBackPressedCallback;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import androidx.core.content.FileProvider;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 import androidx.lifecycle.ViewModelProvider;
-import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -62,19 +63,29 @@ import com.treelang.mean.data.BackupRecord;
 import com.treelang.mean.utils.AdbHelper;
 import com.treelang.mean.utils.AppUtils;
 import com.treelang.mean.utils.FileUtils;
+import com.treelang.mean.utils.IconCache;
+import com.treelang.mean.utils.IconLoader;
+import com.treelang.mean.utils.PackageDetails;
+import com.treelang.mean.utils.PmBatch;
+import com.treelang.mean.utils.ShellExecutor;
+import com.treelang.mean.utils.ShellStats;
 import com.treelang.mean.viewmodels.MainViewModel;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class MainActivity extends ComponentActivity {
 
@@ -175,6 +186,12 @@ public class MainActivity extends ComponentActivity {
         }
     });
 
+    // 批量卸载失败、等待转到系统卸载界面的应用，上一个卸载界面关闭后再打开下一个
+    private final ArrayDeque<String> pendingSystemUninstalls = new ArrayDeque<>();
+    private final ActivityResultLauncher<Intent> systemUninstallLauncher = registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
+        startNextSystemUninstall();
+    });
+
     private final OnBackPressedCallback onBackPressedCallback = new OnBackPressedCallback(false) {
         @Override
         public void handleOnBackPressed() {
@@ -285,16 +302,10 @@ public class MainActivity extends ComponentActivity {
             needRefresh = false;
         }
 
-        // Load apps in background thread
-        executorService.execute(() -> {
-            mainViewModel.loadApps();
-
-            if (needRefresh) {
-                uiHandler.post(() ->
-                        Snackbar.make(findViewById(R.id.root), "应用列表已更新", Snackbar.LENGTH_SHORT).show()
-                );
-            }
-        });
+        // 应用列表由包变化广播增量更新，回到前台时不需要重新加载
+        if (needRefresh) {
+            Snackbar.make(findViewById(R.id.root), "应用列表已更新", Snackbar.LENGTH_SHORT).show();
+        }
     }
 
     private void setupSearchBarAndView() {
@@ -645,15 +656,6 @@ public class MainActivity extends ComponentActivity {
     }
 
 
-    private String getAdbCommand(BackupRecord record) {
-        if ("Disabled".equals(record.getAppStatus())) {
-            return "pm disable-user " + record.getPackageName();
-        } else if ("Uninstalled".equals(record.getAppStatus())) {
-            return "pm uninstall " + record.getPackageName();
-        }
-        return "";
-    }
-
     private void setupRecyclerView() {
         appListAdapter = new AppListAdapter();
 
@@ -749,13 +751,61 @@ public class MainActivity extends ComponentActivity {
         String installerPackageName = getPackageManager().getInstallerPackageName(appInfo.getPackageName());
         detailMsg.append("Install source: ").append(installerPackageName != null ? installerPackageName : "Unknown").append("\n");
 
-        new MaterialAlertDialogBuilder(this)
+        AlertDialog dialog = new MaterialAlertDialogBuilder(this)
                 .setTitle(appInfo.getAppName())
-                .setIcon(appInfo.getAppIcon())
                 .setMessage(detailMsg.toString())
                 .setNegativeButton("Cancel", null)
-                .setNeutralButton("Share", (dialog, which) -> shareAppInfo(appInfo, detailMsg.toString()))
+                .setNeutralButton("Share", (d, which) -> shareAppInfo(appInfo, detailMsg.toString()))
                 .show();
+        showAppIcon(appInfo.getPackageName(), dialog::setIcon);
+
+        // 权限和签名不在列表加载时查询，打开详情时再单独获取并追加显示
+        mainViewModel.loadPackageDetails(appInfo.getPackageName()).observe(this, details -> {
+            if (details != null) {
+                detailMsg.append(formatPackageDetails(details));
+                if (dialog.isShowing()) {
+                    dialog.setMessage(detailMsg.toString());
+                }
+            }
+        });
+    }
+
+    // 优先使用缓存中的图标；未缓存时先显示默认图标，在后台加载完成后再替换
+    private void showAppIcon(String packageName, Consumer<Drawable> target) {
+        IconCache iconCache = IconCache.getInstance(this);
+        Drawable icon = iconCache.getDrawable(packageName);
+        if (icon != null) {
+            target.accept(icon);
+            return;
+        }
+        target.accept(getPackageManager().getDefaultActivityIcon());
+        IconLoader.getInstance(this).load(packageName, IconLoader.PRIORITY_VISIBLE, key -> {
+            Drawable loaded = iconCache.getDrawable(key);
+            if (loaded != null && !isFinishing()) {
+                target.accept(loaded);
+            }
+        });
+    }
+
+    private String formatPackageDetails(PackageDetails details) {
+        StringBuilder msg = new StringBuilder(1024);
+
+        // 签名信息
+        msg.append("\n* Signature\n\n");
+        if (details.getSignerDigests().isEmpty()) {
+            msg.append("Unknown\n");
+        }
+        for (String digest : details.getSignerDigests()) {
+            msg.append("SHA-256: ").append(digest).append("\n");
+        }
+        msg.append("Meta-data entries: ").append(details.getMetaDataCount()).append("\n");
+
+        // 权限信息
+        msg.append("\n* Permissions (").append(details.getPermissions().size()).append(")\n\n");
+        for (PackageDetails.Permission permission : details.getPermissions()) {
+            msg.append(permission.granted ? "[granted] " : "[denied] ").append(permission.name).append("\n");
+        }
+        return msg.toString();
     }
 
     // 分享应用信息
@@ -792,9 +842,15 @@ public class MainActivity extends ComponentActivity {
         }
 
         // Set app information in the bottom sheet
-        bottomSheetAppIcon.setImageDrawable(appInfo.getAppIcon());
+        String packageName = appInfo.getPackageName();
         bottomSheetAppName.setText(appInfo.getAppName());
-        bottomSheetPackageName.setText(appInfo.getPackageName());
+        bottomSheetPackageName.setText(packageName);
+        showAppIcon(packageName, icon -> {
+            // 图标加载完成前底部菜单可能已切换到其他应用
+            if (packageName.equals(bottomSheetPackageName.getText().toString())) {
+                bottomSheetAppIcon.setImageDrawable(icon);
+            }
+        });
 
         // Create operations list with icons
         List<OperationsAdapter.Operation> operations = createOperationsList(appInfo);
@@ -912,6 +968,15 @@ public class MainActivity extends ComponentActivity {
         // 观察加  进度
         mainViewModel.getLoadingProgress().observe(this, progress -> progressIndicator.setProgress(progress));
 
+        // 第二阶段加载（图标、名称、大小）完成后局部刷新对应的行
+        mainViewModel.getEnrichedSignal().observe(this, signal -> {
+            Set<String> enrichedPackages = mainViewModel.consumeEnrichedPackages();
+            appListAdapter.notifyAppsEnriched(enrichedPackages);
+            if (searchViewAppListAdapter != null) {
+                searchViewAppListAdapter.notifyAppsEnriched(enrichedPackages);
+            }
+        });
+
         // 使用getViewLifecycleOwner而不是this，以防止内存泄漏
         mainViewModel.getCurrentShowApps().observe(this, appInfos -> {
             if (appInfos != null) {
@@ -999,113 +1064,113 @@ public class MainActivity extends ComponentActivity {
     }
 
     //修改loadApp为loadApps
+    // 备份中的禁用、卸载操作编译成少量脚本一次执行，每个包的结果单独解析
     private void applyBackup(List<BackupRecord> records) {
-        int total = records.size();
-        AtomicInteger processedCount = new AtomicInteger(0);
-        AtomicInteger failedCount = new AtomicInteger(0);
-
-        // Use controlled concurrency to prevent overwhelming the system
-        ExecutorService batchExecutor = Executors.newFixedThreadPool(2);
-
+        PmBatch batch = new PmBatch();
+        int unchanged = 0;
         for (BackupRecord record : records) {
-            if ("Installed".equals(record.getAppStatus())) {
-                processedCount.incrementAndGet();
-                continue;
+            if ("Disabled".equals(record.getAppStatus())) {
+                batch.add(PmBatch.Action.DISABLE, record.getPackageName());
+            } else if ("Uninstalled".equals(record.getAppStatus())) {
+                batch.add(PmBatch.Action.UNINSTALL, record.getPackageName());
+            } else {
+                unchanged++;
             }
+        }
+        runBatch(batch, unchanged);
+    }
 
-            String packageName = record.getPackageName();
-            batchExecutor.execute(() -> AdbHelper.executeShellCommandAsync(getAdbCommand(record), new AdbHelper.AdbCommandListener() {
-                @Override
-                public void onCommandOutput(String output) {
-                    Log.d("ADB", output);
+    // 在后台执行批量操作，完成后统一更新列表中的状态并提示结果
+    private void runBatch(PmBatch batch, int alreadySucceeded) {
+        // 执行期间可以停止，停止时结束正在执行的 pm 进程，剩余的操作不再执行
+        Snackbar.make(coordinatorLayout, "Running batch operation on " + batch.size() + " apps", Snackbar.LENGTH_INDEFINITE)
+                .setAction("Stop", v -> batch.cancel())
+                .show();
+        batch.run(ShellExecutor.getDefault(), outcome -> {
+            if (!outcome.isSuccess()) {
+                Log.d("ADB", outcome.action + " " + outcome.packageName + " failed: " + outcome.output);
+            }
+        }).thenAccept(outcomes -> {
+            // 记录本次批量操作中各脚本的排队、启动和执行耗时，不包括同时执行的其他命令
+            batch.getRecords().thenAccept(records -> {
+                for (ShellStats.Record record : records) {
+                    Log.d("ADB", "Batch script: " + record);
                 }
-
-                @Override
-                public void onCommandComplete(int exitCode) {
-                    if (exitCode == 0) {
-                        int processed = processedCount.incrementAndGet();
-
-                        // Batch UI updates for better performance
-                        if (processed % 3 == 0 || processed == total) {
-                            uiHandler.post(() -> {
-                                List<AppInfo> appInfos = mainViewModel.getCurrentShowApps().getValue();
-                                if (appInfos != null) {
-                                    // Find and update efficiently
-                                    for (AppInfo appInfo : appInfos) {
-                                        if (appInfo.getPackageName().equals(packageName)) {
-                                            if ("Disabled".equals(record.getAppStatus())) {
-                                                appInfo.setStatus("Disabled");
-                                            } else if ("Uninstalled".equals(record.getAppStatus())) {
-                                                appInfo.setStatus("Uninstalled");
-                                            }
-                                            appListAdapter.notifyItemChanged(appInfos.indexOf(appInfo));
-                                            break;
-                                        }
-                                    }
-                                }
-                            });
-                        }
-                    } else {
-                        failedCount.incrementAndGet();
-                    }
-                    checkIfAllOperationsComplete(total, processedCount, failedCount);
+                // 全部 shell 命令的累计汇总及最近命令中最慢的几条，用于对比批量操作与其他命令的耗时
+                ShellStats shellStats = AdbHelper.getShellStats();
+                Log.d("ADB", "Shell stats: " + shellStats.getSummary());
+                for (ShellStats.Record record : shellStats.getSlowest(5)) {
+                    Log.d("ADB", "Slowest command: " + record);
                 }
+            });
+            uiHandler.post(() -> onBatchComplete(outcomes, alreadySucceeded));
+        });
+    }
 
-                @Override
-                public void onCommandError(Exception e) {
-                    failedCount.incrementAndGet();
-                    checkIfAllOperationsComplete(total, processedCount, failedCount);
-                }
-            }));
+    private void onBatchComplete(List<PmBatch.Outcome> outcomes, int alreadySucceeded) {
+        Map<String, PmBatch.Outcome> succeeded = new HashMap<>();
+        List<String> failedUninstalls = new ArrayList<>();
+        int cancelled = 0;
+        for (PmBatch.Outcome outcome : outcomes) {
+            if (outcome.isSuccess()) {
+                succeeded.put(outcome.packageName, outcome);
+            } else if (outcome.isCancelled()) {
+                cancelled++;
+            } else if (outcome.action == PmBatch.Action.UNINSTALL) {
+                failedUninstalls.add(outcome.packageName);
+            }
         }
-
-        // Shutdown executor when done
-        batchExecutor.shutdown();
+        List<AppInfo> appInfos = appListAdapter.getCurrentList();
+        for (int i = 0; i < appInfos.size(); i++) {
+            PmBatch.Outcome outcome = succeeded.get(appInfos.get(i).getPackageName());
+            if (outcome != null) {
+                appInfos.get(i).setStatus(outcome.action.resultingStatus);
+                appListAdapter.notifyItemChanged(i);
+            }
+        }
+        int failed = outcomes.size() - succeeded.size() - cancelled;
+        String message = "Batch operation: Succeeded " + (succeeded.size() + alreadySucceeded) + " , failed " + failed;
+        if (cancelled > 0) {
+            message = "Batch operation stopped: Succeeded " + (succeeded.size() + alreadySucceeded) + " , failed " + failed + " , not run " + cancelled;
+        }
+        Snackbar snackbar = Snackbar.make(coordinatorLayout, message, Snackbar.LENGTH_LONG);
+        // 静默卸载失败的应用由用户确认后逐个转到系统卸载界面
+        if (!failedUninstalls.isEmpty()) {
+            snackbar.setAction("Uninstall " + failedUninstalls.size(), v -> {
+                pendingSystemUninstalls.clear();
+                pendingSystemUninstalls.addAll(failedUninstalls);
+                startNextSystemUninstall();
+            });
+        }
+        snackbar.show();
     }
 
-    private void checkIfAllOperationsComplete(int total, AtomicInteger processed, AtomicInteger failed) {
-        if (processed.get() + failed.get() == total) {
-            Snackbar.make(coordinatorLayout,"Batch operation: Succeeded" + processed.get() + " , failed " + failed.get() ,Snackbar.LENGTH_LONG).show();
-
-
-            // 保存当前列表状态
-            List<AppInfo> oldList = new ArrayList<>(appListAdapter.getCurrentList());
-
-            // ��新加载应用列表
-            mainViewModel.loadApps();
-
-            // 使用 DiffUtil 计算差异并更新
-            mainViewModel.getCurrentShowApps().observe(this, newList -> {
-                if (newList != null) {
-                    DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new DiffUtil.Callback() {
-                        @Override
-                        public int getOldListSize() {
-                            return oldList.size();
-                        }
-
-                        @Override
-                        public int getNewListSize() {
-                            return newList.size();
-                        }
-
-                        @Override
-                        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
-                            return oldList.get(oldItemPosition).getPackageName().equals(newList.get(newItemPosition).getPackageName());
-                        }
-
-                        @Override
-                        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-                            AppInfo oldItem = oldList.get(oldItemPosition);
-                            AppInfo newItem = newList.get(newItemPosition);
-                            return oldItem.getStatus().equals(newItem.getStatus()) && oldItem.getAppName().equals(newItem.getAppName());
-                        }
-                    });
+    private void startNextSystemUninstall() {
+        String packageName = pendingSystemUninstalls.pollFirst();
+        if (packageName == null) {
+            return;
+        }
+        try {
+            Intent intent = new Intent(Intent.ACTION_DELETE);
+            intent.setData(Uri.parse("package:" + packageName));
+            systemUninstallLauncher.launch(intent);
+        } catch (Exception e) {
+            Log.e("MainActivity", "Error starting uninstall activity", e);
+            pendingSystemUninstalls.clear();
+            Snackbar.make(coordinatorLayout, "Unable to initiate system uninstall:" + e.getMessage(), Snackbar.LENGTH_SHORT).show();
+        }
+    }
 
-                    // 使用 DiffUtil 结果更新适配器
-                    appListAdapter.submitList(newList);
-                    diffResult.dispatchUpdatesTo(appListAdapter);
-                }
-            });
+    private void startSystemUninstall(String packageName) {
+        try {
+            Uri packageUrl = Uri.parse("package:" + packageName);
+            Intent intent = new Intent(Intent.ACTION_DELETE);
+            intent.setData(packageUrl);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            startActivity(intent);
+        } catch (Exception e) {
+            Log.e("MainActivity", "Error starting uninstall activity", e);
+            Snackbar.make(coordinatorLayout, "Unable to initiate system uninstall:" + e.getMessage(), Snackbar.LENGTH_SHORT).show();
         }
     }
 
@@ -1127,23 +1192,11 @@ public class MainActivity extends ComponentActivity {
 
                                 Snackbar.make(coordinatorLayout, "Uninstall successfully: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show();
                                 appInfo.setStatus("Uninstalled");
-                                mainViewModel.loadApps();
                             } else {
                                 Snackbar.make(coordinatorLayout, "Uninstall failed, heading to system uninstall", Snackbar.LENGTH_SHORT).show();
 
                                 // 使用 Handler 延迟启动系统卸载器，避  可能的线程问题
-                                new Handler().postDelayed(() -> {
-                                    try {
-                                        Uri packageUrl = Uri.parse("package:" + appInfo.getPackageName());
-                                        Intent intent = new Intent(Intent.ACTION_DELETE);
-                                        intent.setData(packageUrl);
-                                        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                                        startActivity(intent);
-                                    } catch (Exception e) {
-                                        Log.e("MainActivity", "Error starting uninstall activity", e);
-                                        Snackbar.make(coordinatorLayout, "Unable to initiate system uninstall:" + e.getMessage(), Snackbar.LENGTH_SHORT).show();
-                                    }
-                                }, 200);
+                                new Handler().postDelayed(() -> startSystemUninstall(appInfo.getPackageName()), 200);
                             }
                         } catch (Exception e) {
                             Log.e("MainActivity", "Error in onCommandComplete", e);
@@ -1185,7 +1238,6 @@ public class MainActivity extends ComponentActivity {
                             progressIndicator.setVisibility(View.GONE);
                             if (exitCode == 0) {
                                 appInfo.setStatus("Disabled");
-                                mainViewModel.loadApps();
                                 Snackbar.make(coordinatorLayout, "Disable successfully: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show();
                             } else {
                                 Snackbar.make(coordinatorLayout, "Disable failed: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show();
@@ -1214,7 +1266,6 @@ public class MainActivity extends ComponentActivity {
                         uiHandler.post(() -> {
                             if (exitCode == 0) {
                                 appInfo.setStatus("Installed");
-                                mainViewModel.loadApps();
                                 Snackbar.make(coordinatorLayout, "Enable successfully: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show();
                             } else {
                                 Snackbar.make(coordinatorLayout, "Enable failed: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show();
@@ -1339,69 +1390,16 @@ public class MainActivity extends ComponentActivity {
                 backupSelectedApps();
                 return true;
             } else if (itemId == R.id.action_disable_selected) {
-                showBatchOperationDialog("Disable", "   定要禁用选中的 " + appListAdapter.getSelectedItemCount() + " 个应用吗？", appInfo -> {
-                    if ("Installed".equals(appInfo.getStatus())) {
-                        AdbHelper.disableApp(appInfo.getPackageName(), new AdbHelper.AdbCommandListener() {
-                            @Override
-                            public void onCommandOutput(String output) {
-                                Log.d("ADB", output);
-                            }
-
-                            @Override
-                            public void onCommandComplete(int exitCode) {
-                                if (exitCode == 0) {
-                                    appInfo.setStatus("Disabled");
-                                    mainViewModel.loadApps();
-                                    Snackbar.make(coordinatorLayout, "Disable successfully: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show();
-                                } else {
-                                    Snackbar.make(coordinatorLayout, "Disable failed: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show();
-                                }
-                            }
-
-                            @Override
-                            public void onCommandError(Exception e) {
-                                runOnUiThread(() -> Toast.makeText(MainActivity.this, "An error occurred: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-                            }
-                        });
-                    }
-                });
+                showBatchOperationDialog("Disable", "确定要禁用选中的 " + appListAdapter.getSelectedItemCount() + " 个应用吗？",
+                        PmBatch.Action.DISABLE, appInfo -> "Installed".equals(appInfo.getStatus()));
                 return true;
             } else if (itemId == R.id.action_enable_selected) {
-                showBatchOperationDialog("Enable", "确定要启用选中的 " + appListAdapter.getSelectedItemCount() + " 个应用吗？", appInfo -> {
-                    if ("Disabled".equals(appInfo.getStatus())) {
-                        AdbHelper.enableApp(appInfo.getPackageName(), new AdbHelper.AdbCommandListener() {
-                            @Override
-                            public void onCommandOutput(String output) {
-                                Log.d("ADB", output);
-                            }
-
-                            @Override
-                            public void onCommandComplete(int exitCode) {
-
-                                if (exitCode == 0) {
-                                    appInfo.setStatus("Installed");
-                                    mainViewModel.loadApps();
-                                    Snackbar.make(coordinatorLayout, "Enabled successfully: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show();
-                                } else {
-                                    Snackbar.make(coordinatorLayout, "Enabled Failed: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show();
-                                }
-                            }
-
-                            @Override
-                            public void onCommandError(Exception e) {
-
-                                runOnUiThread(() ->
-                                        Snackbar.make(coordinatorLayout, "An error occurred: " + appInfo.getAppName(), Snackbar.LENGTH_SHORT).show()
-
-                                );
-                            }
-                        });
-                    }
-                });
+                showBatchOperationDialog("Enable", "确定要启用选中的 " + appListAdapter.getSelectedItemCount() + " 个应用吗？",
+                        PmBatch.Action.ENABLE, appInfo -> "Disabled".equals(appInfo.getStatus()));
                 return true;
             } else if (itemId == R.id.action_uninstall_selected) {
-                // 使   单个卸载方法，而不是复制代码
-                showBatchOperationDialog("Uninstall", "确定要卸载选中的 " + appListAdapter.getSelectedItemCount() + " 个应用吗？", this::uninstallApp);
+                showBatchOperationDialog("Uninstall", "确定要卸载选中的 " + appListAdapter.getSelectedItemCount() + " 个应用吗？",
+                        PmBatch.Action.UNINSTALL, appInfo -> true);
                 return true;
             } else if (itemId == R.id.action_install_selected) {
                 // TODO: 实现批量安装功能
@@ -1443,34 +1441,17 @@ public class MainActivity extends ComponentActivity {
         menu.findItem(R.id.action_extract_apk_selected).setVisible(hasInstalledApps || hasDisabledApps);
     }
 
-    private void showBatchOperationDialog(String operation, String message, BatchOperationCallback callback) {
+    // 选中且符合条件的应用编译成一个批量操作执行，不再逐个延迟提交
+    private void showBatchOperationDialog(String operation, String message, PmBatch.Action action, Predicate<AppInfo> eligible) {
         new MaterialAlertDialogBuilder(this).setTitle(operation + "应用").setMessage(message).setPositiveButton("确定", (dialog, which) -> {
             try {
-                List<AppInfo> selectedApps = new ArrayList<>();
+                PmBatch batch = new PmBatch();
                 for (AppInfo appInfo : appListAdapter.getCurrentList()) {
-                    if (appInfo.isSelected()) {
-                        selectedApps.add(appInfo);
+                    if (appInfo.isSelected() && eligible.test(appInfo)) {
+                        batch.add(action, appInfo.getPackageName());
                     }
                 }
-
-                // Use ExecutorService for better thread management
-                executorService.execute(() -> {
-                    int delay = 0;
-                    for (AppInfo appInfo : selectedApps) {
-                        // Schedule with increasing delay to avoid overwhelming ADB
-                        uiHandler.postDelayed(() -> {
-                            try {
-                                callback.onOperation(appInfo);
-                            } catch (Exception e) {
-                                Log.e("MainActivity", "批量操作出错: " + e.getMessage(), e);
-                                uiHandler.post(() ->
-                                        Snackbar.make(coordinatorLayout, operation + "出错: " + e.getMessage(), Snackbar.LENGTH_SHORT).show()
-                                );
-                            }
-                        }, delay);
-                        delay += 150; // Reduced delay for faster execution
-                    }
-                });
+                runBatch(batch, 0);
 
                 // Exit selection mode
                 hideContextualToolbarAndClearSelection();
@@ -1481,10 +1462,6 @@ public class MainActivity extends ComponentActivity {
         }).setNegativeButton("取消", null).show();
     }
 
-    private interface BatchOperationCallback {
-        void onOperation(AppInfo appInfo);
-    }
-
     private void hideContextualToolbarAndClearSelection() {
         AppListAdapter.setSelectionModeEnabled(false);
         if (collapseContextualToolbar()) {
@@ -1,9 +1,10 @@
 package com.treelang.mean.adapters;
 
+import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
 import android.graphics.Paint;
-import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,8 +18,9 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.divider.MaterialDivider;
 import com.treelang.mean.R;
-
-import java.util.List;
+import com.treelang.mean.utils.AppUtils;
+import com.treelang.mean.utils.IconCache;
+import com.treelang.mean.utils.IconLoader;
 
 public class ActivityListAdapter extends ListAdapter<ActivityInfo, ActivityListAdapter.ViewHolder> {
     private OnActivityClickListener listener;
@@ -37,9 +39,11 @@ public class ActivityListAdapter extends ListAdapter<ActivityInfo, ActivityListA
 
             @Override
             public boolean areContentsTheSame(@NonNull ActivityInfo oldItem, @NonNull ActivityInfo newItem) {
-                return oldItem.name.equals(newItem.name) && 
+                // 名称从共享缓存读取，比较时不再解析资源
+                return oldItem.name.equals(newItem.name) &&
                        oldItem.exported == newItem.exported &&
-                       oldItem.loadLabel(packageManager).equals(newItem.loadLabel(packageManager));
+                       AppUtils.getComponentLabel(packageManager, oldItem)
+                               .equals(AppUtils.getComponentLabel(packageManager, newItem));
             }
         });
         this.packageManager = packageManager;
@@ -57,16 +61,21 @@ public class ActivityListAdapter extends ListAdapter<ActivityInfo, ActivityListA
         return new ViewHolder(view);
     }
 
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.cancelIconRequest();
+    }
+
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
         ActivityInfo activity = getItem(position);
         
         // 设置图标
-        Drawable icon = activity.loadIcon(packageManager);
-        holder.activityIcon.setImageDrawable(icon);
+        holder.bindIcon(activity);
         
         // 设置标签和名称
-        holder.activityLabel.setText(activity.loadLabel(packageManager));
+        holder.activityLabel.setText(AppUtils.getComponentLabel(packageManager, activity));
         holder.activityName.setText(activity.name);
 
         // 根据导出状态设置样式
@@ -85,10 +94,13 @@ public class ActivityListAdapter extends ListAdapter<ActivityInfo, ActivityListA
         });
     }
 
-    static class ViewHolder extends RecyclerView.ViewHolder {
+    class ViewHolder extends RecyclerView.ViewHolder {
         ImageView activityIcon;
         TextView activityLabel;
         TextView activityName;
+        private String pendingIconKey;
+        // 每行使用自己的回调：同一应用的活动大多共用应用图标的键，某一行被回收撤回请求时不会影响其他行
+        private final IconLoader.Callback iconCallback = this::onIconLoaded;
 
         ViewHolder(View itemView) {
             super(itemView);
@@ -96,5 +108,41 @@ public class ActivityListAdapter extends ListAdapter<ActivityInfo, ActivityListA
             activityLabel = itemView.findViewById(R.id.activity_label);
             activityName = itemView.findViewById(R.id.activity_name);
         }
+
+        // 优先使用缓存，未缓存时先显示默认图标，在后台加载完成后只更新这一行
+        void bindIcon(ActivityInfo activity) {
+            Context context = itemView.getContext();
+            String key = IconCache.componentKey(activity);
+            if (!key.equals(pendingIconKey)) {
+                cancelIconRequest();
+            }
+            Bitmap icon = IconCache.getInstance(context).get(key);
+            if (icon != null) {
+                activityIcon.setImageBitmap(icon);
+                return;
+            }
+            activityIcon.setImageDrawable(packageManager.getDefaultActivityIcon());
+            pendingIconKey = key;
+            IconLoader.getInstance(context).load(activity, IconLoader.PRIORITY_VISIBLE, iconCallback);
+        }
+
+        private void onIconLoaded(String key) {
+            // 加载期间这一行已经绑定到其他活动
+            if (!key.equals(pendingIconKey)) {
+                return;
+            }
+            pendingIconKey = null;
+            Bitmap icon = IconCache.getInstance(itemView.getContext()).get(key);
+            if (icon != null) {
+                activityIcon.setImageBitmap(icon);
+            }
+        }
+
+        void cancelIconRequest() {
+            if (pendingIconKey != null) {
+                IconLoader.getInstance(itemView.getContext()).cancel(pendingIconKey, iconCallback);
+                pendingIconKey = null;
+            }
+        }
     }
 } 
\ No newline at end of file
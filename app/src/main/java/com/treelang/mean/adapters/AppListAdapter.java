@@ -10,19 +10,24 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.card.MaterialCardView;
 import com.treelang.mean.R;
 import com.treelang.mean.data.AppInfo;
-import com.treelang.mean.utils.AppUtils;
+import com.treelang.mean.utils.IconCache;
+import com.treelang.mean.utils.IconLoader;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 
 import java.io.File;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
@@ -45,6 +50,18 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
     // Background executor for heavy operations
     private static final Executor backgroundExecutor = Executors.newFixedThreadPool(2);
 
+    // 可见区域前后各预取多少行的图标
+    private static final int PREFETCH_DISTANCE = 10;
+    // 预取请求使用单独的回调，撤回预取时不会影响可见行自己的请求
+    private final IconLoader.Callback prefetchCallback = this::onIconLoaded;
+    private Set<String> prefetchedPackages = new HashSet<>();
+    private final RecyclerView.OnScrollListener prefetchScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            prefetchIcons(recyclerView);
+        }
+    };
+
     public interface OnAppItemClickListener{
         void onAppItemClick(AppInfo appInfo);
     }
@@ -111,9 +128,6 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
             if (oldItem.isSelected() != newItem.isSelected()) {
                 return PAYLOAD_SELECTION_CHANGED;
             }
-            if (oldItem.getAppIcon() != newItem.getAppIcon()) {
-                return PAYLOAD_ICON_LOADED;
-            }
             return null;
         }
     }
@@ -237,11 +251,95 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
         return selectedItems;
     }
 
+    // 第二阶段加载完成后，只局部刷新这些包对应的行
+    public void notifyAppsEnriched(Set<String> packageNames) {
+        if (packageNames == null || packageNames.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < appList.size(); i++) {
+            if (packageNames.contains(appList.get(i).getPackageName())) {
+                notifyItemChanged(i, PAYLOAD_ICON_LOADED);
+            }
+        }
+    }
+
     // 添加获取当前列表的方法
     public List<AppInfo> getCurrentList() {
         return new ArrayList<>(appList);
     }
 
+    // 图标加载完成，局部刷新显示该包的行
+    private void onIconLoaded(String packageName) {
+        for (int i = 0; i < appList.size(); i++) {
+            if (appList.get(i).getPackageName().equals(packageName)) {
+                notifyItemChanged(i, PAYLOAD_ICON_LOADED);
+            }
+        }
+    }
+
+    // 预取可见区域前后若干行的图标，并撤回已经离开预取范围的请求
+    private void prefetchIcons(RecyclerView recyclerView) {
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager layoutManager)) {
+            return;
+        }
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        Context context = recyclerView.getContext();
+        IconCache iconCache = IconCache.getInstance(context);
+        IconLoader iconLoader = IconLoader.getInstance(context);
+
+        Set<String> window = new HashSet<>();
+        // 缓存已满时预取只会挤掉可见行的图标，撤回全部预取请求
+        if (!iconCache.isFull()) {
+            int from = Math.max(0, first - PREFETCH_DISTANCE);
+            int to = Math.min(appList.size() - 1, last + PREFETCH_DISTANCE);
+            for (int i = from; i <= to; i++) {
+                if (i >= first && i <= last) {
+                    continue;
+                }
+                String packageName = appList.get(i).getPackageName();
+                if (iconCache.get(packageName) == null) {
+                    window.add(packageName);
+                }
+            }
+        }
+        for (String packageName : prefetchedPackages) {
+            if (!window.contains(packageName)) {
+                iconLoader.cancel(packageName, prefetchCallback);
+            }
+        }
+        for (String packageName : window) {
+            iconLoader.load(packageName, IconLoader.PRIORITY_NEAR_VISIBLE, prefetchCallback);
+        }
+        prefetchedPackages = window;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        recyclerView.addOnScrollListener(prefetchScrollListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(prefetchScrollListener);
+        IconLoader iconLoader = IconLoader.getInstance(recyclerView.getContext());
+        for (String packageName : prefetchedPackages) {
+            iconLoader.cancel(packageName, prefetchCallback);
+        }
+        prefetchedPackages = new HashSet<>();
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull AppViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.cancelIconRequest();
+    }
+
     @NonNull
     @Override
     public AppViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
@@ -263,22 +361,7 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
             // Full bind
             holder.bind(currentApp, itemClickListener, itemLongClickListener, onItemSelectedStateChangedListener);
 
-            // 直接设置图标 - 使用已同步加载好的图标
-            if (currentApp.getAppIcon() != null) {
-                holder.appIconImageView.setImageDrawable(currentApp.getAppIcon());
-            } else {
-                // 如果某种原因导致图标为空，尝试从缓存中获取
-                Context context = holder.itemView.getContext();
-                android.graphics.drawable.Drawable cachedIcon = AppUtils.getIconFromCache(currentApp.getPackageName());
-
-                if (cachedIcon != null) {
-                    holder.appIconImageView.setImageDrawable(cachedIcon);
-                    currentApp.setAppIcon(cachedIcon);
-                } else {
-                    // 如果缓存也没有，则设置默认图标
-                    holder.appIconImageView.setImageDrawable(context.getPackageManager().getDefaultActivityIcon());
-                }
-            }
+            holder.bindIcon(currentApp);
 
             // 设置选中状态
             holder.cardView.setChecked(currentApp.isSelected());
@@ -288,9 +371,13 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
                 if (PAYLOAD_SELECTION_CHANGED.equals(payload)) {
                     holder.cardView.setChecked(currentApp.isSelected());
                 } else if (PAYLOAD_ICON_LOADED.equals(payload)) {
-                    if (currentApp.getAppIcon() != null) {
-                        holder.appIconImageView.setImageDrawable(currentApp.getAppIcon());
+                    Bitmap icon = IconCache.getInstance(holder.itemView.getContext()).get(currentApp.getPackageName());
+                    if (icon != null) {
+                        holder.pendingIconPackage = null;
+                        holder.appIconImageView.setImageBitmap(icon);
                     }
+                    // 第二阶段加载同时补充了名称和大小
+                    holder.bindDetails(currentApp);
                 }
             }
         }
@@ -302,6 +389,9 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
         private TextView appInfoTextView; // 合并后的信息文本
         private ImageView appIconImageView;
         private MaterialCardView cardView;
+        private String pendingIconPackage;
+        // 每行使用自己的回调，同一个包的请求由各行分别撤回
+        private final IconLoader.Callback iconCallback = packageName -> onIconLoaded(packageName);
 
         AppViewHolder(View itemView) {
             super(itemView);
@@ -316,8 +406,61 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
                  OnAppItemClickListener clickListener,
                  OnAppItemLongClickListener longClickListener,
                  OnItemSelectedStateChangedListener selectionListener) {
-            appNameTextView.setText(appInfo.getAppName());
             packageNameTextView.setText(appInfo.getPackageName());
+            bindDetails(appInfo);
+
+            // 设置选中状态
+            cardView.setChecked(appInfo.isSelected());
+
+            // 设置点击事件
+            cardView.setOnClickListener(v -> {
+                if (selectionModeEnabled) {
+                    toggleItemSelection(appInfo, selectionListener);
+                } else if (clickListener != null) {
+                    clickListener.onAppItemClick(appInfo);
+                }
+            });
+
+            // 设置长按事件
+            cardView.setOnLongClickListener(v -> {
+                if (selectionModeEnabled) {
+                    return false;
+                }
+                if (longClickListener != null) {
+                    return longClickListener.onAppItemLongClick(appInfo);
+                }
+                return false;
+            });
+        }
+
+        // 设置图标：优先使用缓存，未缓存时先显示默认图标，加载完成后通过 PAYLOAD_ICON_LOADED 局部刷新
+        void bindIcon(AppInfo appInfo) {
+            Context context = itemView.getContext();
+            String packageName = appInfo.getPackageName();
+            if (!packageName.equals(pendingIconPackage)) {
+                cancelIconRequest();
+            }
+            Bitmap icon = IconCache.getInstance(context).get(packageName);
+            if (icon != null) {
+                appIconImageView.setImageBitmap(icon);
+                return;
+            }
+            appIconImageView.setImageDrawable(context.getPackageManager().getDefaultActivityIcon());
+            pendingIconPackage = packageName;
+            IconLoader.getInstance(context).load(packageName, IconLoader.PRIORITY_VISIBLE, iconCallback);
+        }
+
+        // 视图被回收时撤回还没完成的图标请求
+        void cancelIconRequest() {
+            if (pendingIconPackage != null) {
+                IconLoader.getInstance(itemView.getContext()).cancel(pendingIconPackage, iconCallback);
+                pendingIconPackage = null;
+            }
+        }
+
+        // 绑定名称和信息文本，第二阶段加载补充名称和大小后会再次调用
+        void bindDetails(AppInfo appInfo) {
+            appNameTextView.setText(appInfo.getAppName());
 
             // 构建信息文本
             StringBuilder infoBuilder = new StringBuilder();
@@ -379,29 +522,6 @@ public class AppListAdapter extends RecyclerView.Adapter<AppListAdapter.AppViewH
                     }
                 }
             }
-
-            // 设置选中状态
-            cardView.setChecked(appInfo.isSelected());
-
-            // 设置点击事件
-            cardView.setOnClickListener(v -> {
-                if (selectionModeEnabled) {
-                    toggleItemSelection(appInfo, selectionListener);
-                } else if (clickListener != null) {
-                    clickListener.onAppItemClick(appInfo);
-                }
-            });
-
-            // 设置长按事件
-            cardView.setOnLongClickListener(v -> {
-                if (selectionModeEnabled) {
-                    return false;
-                }
-                if (longClickListener != null) {
-                    return longClickListener.onAppItemLongClick(appInfo);
-                }
-                return false;
-            });
         }
 
         private void toggleItemSelection(AppInfo appInfo, OnItemSelectedStateChangedListener listener) {
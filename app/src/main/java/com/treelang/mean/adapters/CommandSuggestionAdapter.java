@@ -0,0 +1,56 @@
+package com.treelang.mean.adapters;
+
+import android.content.Context;
+import android.widget.ArrayAdapter;
+import android.widget.Filter;
+
+import androidx.annotation.NonNull;
+
+import com.treelang.mean.utils.CommandHistory;
+
+import java.util.List;
+
+/**
+ * Autocomplete suggestions for the command input, looked up in {@link CommandHistory} as the user
+ * types. Lookups run on the filter's background thread.
+ */
+public class CommandSuggestionAdapter extends ArrayAdapter<String> {
+    // 最多显示的建议数
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final CommandHistory history;
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            if (constraint != null) {
+                List<String> suggestions = history.suggest(constraint.toString(), MAX_SUGGESTIONS);
+                results.values = suggestions;
+                results.count = suggestions.size();
+            }
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            setNotifyOnChange(false);
+            clear();
+            if (results.values != null) {
+                addAll((List<String>) results.values);
+            }
+            notifyDataSetChanged();
+        }
+    };
+
+    public CommandSuggestionAdapter(Context context, CommandHistory history) {
+        super(context, android.R.layout.simple_dropdown_item_1line);
+        this.history = history;
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,111 @@
+package com.treelang.mean.adapters;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.treelang.mean.R;
+import com.treelang.mean.utils.LineRingBuffer;
+
+import java.util.List;
+
+/**
+ * Shows command output one line per row, backed by a {@link LineRingBuffer}. Only the rows on
+ * screen are laid out, so appending costs the same however long the output already is, and once
+ * the buffer is full the oldest lines are dropped from the top.
+ */
+public class ConsoleAdapter extends RecyclerView.Adapter<ConsoleAdapter.LineViewHolder> {
+
+    private final LineRingBuffer lines;
+
+    {
+        setHasStableIds(true);
+    }
+
+    public ConsoleAdapter(int maxLines) {
+        lines = new LineRingBuffer(maxLines);
+    }
+
+    // 在主线程中调用
+    public void appendLines(List<String> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int before = lines.size();
+        int evicted = 0;
+        for (String line : batch) {
+            evicted += lines.add(line);
+        }
+        if (evicted > 0 && evicted >= before) {
+            // 原有的行全部被替换
+            notifyDataSetChanged();
+            return;
+        }
+        if (evicted > 0) {
+            notifyItemRangeRemoved(0, evicted);
+        }
+        notifyItemRangeInserted(before - evicted, batch.size());
+    }
+
+    /**
+     * Returns the newest lines that fit in {@code maxChars}, joined by newlines, oldest first.
+     * The clipboard goes through Binder, so a full buffer may be too large to copy in one piece.
+     */
+    public String getRecentText(int maxChars) {
+        int from = lines.size();
+        int chars = 0;
+        while (from > 0 && chars + lines.get(from - 1).length() + 1 <= maxChars) {
+            from--;
+            chars += lines.get(from).length() + 1;
+        }
+        StringBuilder text = new StringBuilder(chars);
+        for (int i = from; i < lines.size(); i++) {
+            if (i > from) {
+                text.append('\n');
+            }
+            text.append(lines.get(i));
+        }
+        return text.toString();
+    }
+
+    public void clear() {
+        lines.clear();
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public LineViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        TextView view = (TextView) LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_console_line, parent, false);
+        return new LineViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull LineViewHolder holder, int position) {
+        holder.lineText.setText(lines.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return lines.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        // 行号从第一行输出开始计数，行被丢弃后保持不变
+        return lines.getEvictedCount() + position;
+    }
+
+    static class LineViewHolder extends RecyclerView.ViewHolder {
+        TextView lineText;
+
+        LineViewHolder(@NonNull TextView itemView) {
+            super(itemView);
+            lineText = itemView;
+        }
+    }
+}
@@ -1,194 +1,175 @@
 package com.treelang.mean.data;
 
-import android.graphics.drawable.Drawable;
-
+// 应用信息的视图，数据保存在 AppStore 的某一行中；图标由 IconCache 按包名缓存
 public class AppInfo {
-    private String appName;
-    private String packageName;
-    private String versionName;
-    private int versionCode;
-    private long firstInstallTime;
-    private long lastUpdateTime;
-    private String installerPackageName;
-    private Drawable appIcon;
-    private boolean isSystemApp;
-    private boolean isCoreApp;
-    private boolean isPrivilegedApp;
-    private String status = "Installed";
-    private long appSize;  // 添加 appSize 属性
-    private String dataPath;               // 数据目录路径
-    private String externalDataPath;       // 外部存储数据路径
-    private String apkPath;                // 安装包路径
-    private int uid;                       // 应用 UID
-
-    private int targetSdkVersion;          // Target API Level
-    private int minSdkVersion;             // Minimum API Level
-    private int compileSdkVersion;         // Compile API Level
-
-    private boolean selected = false;
+    private final AppStore store;
+    private final int row;
+
+    // 单独创建的应用信息使用只有一行的存储
+    public AppInfo() {
+        store = new AppStore(1);
+        row = 0;
+        store.attach(this, 0);
+    }
+
+    AppInfo(AppStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
 
     public String getAppName() {
-        return appName;
+        return store.appNames[row];
     }
 
     public void setAppName(String appName) {
-        this.appName = appName;
+        store.appNames[row] = appName;
     }
 
     public String getPackageName() {
-        return packageName;
+        return store.packageNames[row];
     }
 
     public void setPackageName(String packageName) {
-        this.packageName = packageName;
+        store.packageNames[row] = packageName;
     }
 
     public String getVersionName() {
-        return versionName;
+        return store.versionNames[row];
     }
 
     public void setVersionName(String versionName) {
-        this.versionName = versionName;
+        store.versionNames[row] = versionName;
     }
 
     public int getVersionCode() {
-        return versionCode;
+        return store.versionCodes[row];
     }
 
     public void setVersionCode(int versionCode) {
-        this.versionCode = versionCode;
+        store.versionCodes[row] = versionCode;
     }
 
     public long getFirstInstallTime() {
-        return firstInstallTime;
+        return store.firstInstallTimes[row];
     }
 
     public void setFirstInstallTime(long firstInstallTime) {
-        this.firstInstallTime = firstInstallTime;
+        store.firstInstallTimes[row] = firstInstallTime;
     }
 
     public long getLastUpdateTime() {
-        return lastUpdateTime;
+        return store.lastUpdateTimes[row];
     }
 
     public void setLastUpdateTime(long lastUpdateTime) {
-        this.lastUpdateTime = lastUpdateTime;
+        store.lastUpdateTimes[row] = lastUpdateTime;
     }
 
-    public void setInstallerPackageName(String installerPackageName) {
-        this.installerPackageName = installerPackageName;
+    public String getInstallerPackageName() {
+        return store.installerPackageNames[row];
     }
 
-    public Drawable getAppIcon() {
-        return appIcon;
+    public void setInstallerPackageName(String installerPackageName) {
+        store.installerPackageNames[row] = AppStore.intern(installerPackageName);
     }
 
-    public void setAppIcon(Drawable appIcon) {
-        this.appIcon = appIcon;
-    }
     public boolean isSystemApp() {
-        return isSystemApp;
+        return store.hasFlag(row, AppStore.FLAG_SYSTEM_APP);
     }
 
     public void setSystemApp(boolean systemApp) {
-        isSystemApp = systemApp;
+        store.setFlag(row, AppStore.FLAG_SYSTEM_APP, systemApp);
     }
     public boolean isPrivilegedApp() {
-        return isPrivilegedApp;
+        return store.hasFlag(row, AppStore.FLAG_PRIVILEGED_APP);
     }
 
     public void setPrivilegedApp(boolean privilegedApp) {
-        isPrivilegedApp = privilegedApp;
+        store.setFlag(row, AppStore.FLAG_PRIVILEGED_APP, privilegedApp);
     }
 
     public void setUserApp(boolean userApp) {
     }
 
     public boolean isCoreApp() {
-        return isCoreApp;
+        return store.hasFlag(row, AppStore.FLAG_CORE_APP);
     }
     public void setCoreApp(boolean coreApp) {
-        isCoreApp = coreApp;
+        store.setFlag(row, AppStore.FLAG_CORE_APP, coreApp);
     }
 
     public String getStatus() {
-        return status;
+        return store.statuses[row];
     }
 
     public void setStatus(String status) {
-        this.status = status;
+        store.statuses[row] = AppStore.intern(status);
     }
 
     public long getAppSize() {  // 新增
-        return appSize;
+        return store.appSizes[row];
     }
 
     public void setAppSize(long appSize) { // 新增
-        this.appSize = appSize;
+        store.appSizes[row] = appSize;
     }
 
+    // 数据目录路径，用到时才拼接
     public String getDataPath() {
-        return dataPath;
-    }
-
-    public void setDataPath(String dataPath) {
-        this.dataPath = dataPath;
+        return "/data/user/0/" + getPackageName();
     }
 
+    // 外部存储数据路径，用到时才拼接
     public String getExternalDataPath() {
-        return externalDataPath;
-    }
-
-    public void setExternalDataPath(String externalDataPath) {
-        this.externalDataPath = externalDataPath;
+        return "/storage/emulated/0/Android/data/" + getPackageName();
     }
 
     public String getApkPath() {
-        return apkPath;
+        return store.apkPaths[row];
     }
 
     public void setApkPath(String apkPath) {
-        this.apkPath = apkPath;
+        store.apkPaths[row] = apkPath;
     }
 
     public int getUid() {
-        return uid;
+        return store.uids[row];
     }
 
     public void setUid(int uid) {
-        this.uid = uid;
+        store.uids[row] = uid;
     }
 
     public boolean isSelected() {
-        return selected;
+        return store.hasFlag(row, AppStore.FLAG_SELECTED);
     }
 
     public void setSelected(boolean selected) {
-        this.selected = selected;
+        store.setFlag(row, AppStore.FLAG_SELECTED, selected);
     }
 
     public int getTargetSdkVersion() {
-        return targetSdkVersion;
+        return store.targetSdkVersions[row];
     }
 
     public void setTargetSdkVersion(int targetSdkVersion) {
-        this.targetSdkVersion = targetSdkVersion;
+        store.targetSdkVersions[row] = targetSdkVersion;
     }
 
     public int getMinSdkVersion() {
-        return minSdkVersion;
+        return store.minSdkVersions[row];
     }
 
     public void setMinSdkVersion(int minSdkVersion) {
-        this.minSdkVersion = minSdkVersion;
+        store.minSdkVersions[row] = minSdkVersion;
     }
 
     public int getCompileSdkVersion() {
-        return compileSdkVersion;
+        return store.compileSdkVersions[row];
     }
 
     public void setCompileSdkVersion(int compileSdkVersion) {
-        this.compileSdkVersion = compileSdkVersion;
+        store.compileSdkVersions[row] = compileSdkVersion;
     }
 
-}
\ No newline at end of file
+}
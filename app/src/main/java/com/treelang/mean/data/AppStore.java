@@ -0,0 +1,101 @@
+package com.treelang.mean.data;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column-oriented storage for the app inventory. Each app is a row index into parallel arrays of
+ * primitives and strings, and {@link AppInfo} is only a lightweight view of one row.
+ * <p>
+ * A store has a fixed number of rows. Different rows may be written from different threads,
+ * a single row must not be written concurrently.
+ */
+public class AppStore {
+    static final int FLAG_SYSTEM_APP = 1;
+    static final int FLAG_PRIVILEGED_APP = 1 << 1;
+    static final int FLAG_CORE_APP = 1 << 2;
+    static final int FLAG_SELECTED = 1 << 3;
+
+    // 安装来源、状态等取值很少的字符串在所有行之间共享同一个实例
+    private static final Map<String, String> stringPool = new ConcurrentHashMap<>();
+
+    final String[] appNames;
+    final String[] packageNames;
+    final String[] versionNames;
+    final String[] installerPackageNames;
+    final String[] statuses;
+    final String[] apkPaths;
+    final int[] versionCodes;
+    final int[] uids;
+    final int[] targetSdkVersions;
+    final int[] minSdkVersions;
+    final int[] compileSdkVersions;
+    final long[] firstInstallTimes;
+    final long[] lastUpdateTimes;
+    final long[] appSizes;
+    final byte[] flags;
+
+    private final AppInfo[] rows;
+
+    public AppStore(int capacity) {
+        appNames = new String[capacity];
+        packageNames = new String[capacity];
+        versionNames = new String[capacity];
+        installerPackageNames = new String[capacity];
+        statuses = new String[capacity];
+        apkPaths = new String[capacity];
+        versionCodes = new int[capacity];
+        uids = new int[capacity];
+        targetSdkVersions = new int[capacity];
+        minSdkVersions = new int[capacity];
+        compileSdkVersions = new int[capacity];
+        firstInstallTimes = new long[capacity];
+        lastUpdateTimes = new long[capacity];
+        appSizes = new long[capacity];
+        flags = new byte[capacity];
+        rows = new AppInfo[capacity];
+        Arrays.fill(statuses, "Installed");
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * Returns the view of the given row. The same instance is returned for every call.
+     */
+    public AppInfo get(int row) {
+        AppInfo appInfo = rows[row];
+        if (appInfo == null) {
+            appInfo = new AppInfo(this, row);
+            rows[row] = appInfo;
+        }
+        return appInfo;
+    }
+
+    // 单行存储创建 AppInfo 时登记自身，保证 get 返回同一个实例
+    void attach(AppInfo appInfo, int row) {
+        rows[row] = appInfo;
+    }
+
+    boolean hasFlag(int row, int flag) {
+        return (flags[row] & flag) != 0;
+    }
+
+    void setFlag(int row, int flag, boolean value) {
+        if (value) {
+            flags[row] |= flag;
+        } else {
+            flags[row] &= ~flag;
+        }
+    }
+
+    static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = stringPool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+}
@@ -0,0 +1,54 @@
+package com.treelang.mean.receivers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * Forwards package added/removed/changed broadcasts so the app list can be patched
+ * incrementally instead of being rescanned. Registered at runtime while the list is alive.
+ */
+public class PackageChangeReceiver extends BroadcastReceiver {
+
+    public interface OnPackageChangedListener {
+        void onPackageChanged(String packageName);
+    }
+
+    private final OnPackageChangedListener listener;
+
+    public PackageChangeReceiver(OnPackageChangedListener listener) {
+        this.listener = listener;
+    }
+
+    public void register(Context context) {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        ContextCompat.registerReceiver(context, this, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    public void unregister(Context context) {
+        context.unregisterReceiver(this);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        Uri data = intent.getData();
+        if (data == null || data.getSchemeSpecificPart() == null) {
+            return;
+        }
+        // 更新应用时会先收到带 EXTRA_REPLACING 的移除广播，随后还有添加/替换广播，这里忽略前者
+        if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())
+                && intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+            return;
+        }
+        listener.onPackageChanged(data.getSchemeSpecificPart());
+    }
+}
@@ -6,19 +6,29 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class AdbHelper {
 
+    // 文件复制等非 shell 的后台任务；shell 命令由 ShellExecutor 执行
     public static final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    // 关闭输出文件并回调；写入慢的目标不会挡住 executorService 中的其他任务，多个文件之间也互不等待
+    private static final ExecutorService teeCloseExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "output-tee-close");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 监听器来不及处理时缓冲的输出行数
+    private static final int OUTPUT_BUFFER_LINES = 1024;
+    // 单个 pm 命令的最长执行时间，卡住的命令会被结束，不会一直占用工作线程
+    public static final long PM_TIMEOUT_MS = 60_000;
 
 
     public interface AdbCommandListener {
@@ -31,106 +41,190 @@ public class AdbHelper {
 
 
     // 通过Shell执行ADB（需要root权限，或者工作在无线调试模式下）
-    public static void executeShellCommandAsync(String command, AdbCommandListener listener) {
-        executorService.submit(() -> {
-            Process process;
-            OutputStream outputStream = null;
-            try {
-                process = Runtime.getRuntime().exec("sh"); // 或者 "su" 如果需要 root
-                outputStream = process.getOutputStream();
-                //写入指令
-                outputStream.write((command + "\n").getBytes());
-                outputStream.write("exit\n".getBytes());// 确保退出 shell
-                outputStream.flush(); // 刷新缓冲区，确保命令被发送
-
-
-                //读取错误输出
-                BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream(), java.nio.charset.StandardCharsets.UTF_8));
-                new Thread(() -> {
-                    String errorLine;
-                    try {
-                        while ((errorLine = errorReader.readLine()) != null) {
-                            if (listener != null) {
-                                listener.onCommandOutput(errorLine); // 每行输出
-                            }
-                        }
-                    } catch (IOException e) {
-                        if (listener != null) {
-                            listener.onCommandError(e);
-                        }
-                    }
-                }).start();
-
-
-                // 读取标准输出
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), java.nio.charset.StandardCharsets.UTF_8));
-                new Thread(() -> {
-                    String line;
-                    try {
-                        while ((line = reader.readLine()) != null) {
-                            if (listener != null) {
-                                listener.onCommandOutput(line); // 每行输出
-                            }
-                        }
-                    } catch (IOException e) {
-                        if (listener != null) {
-                            listener.onCommandError(e);
-                        }
-                    }
-
-                }).start();
-
+    // 命令交给 ShellExecutor 的工作线程池并发执行，返回的句柄可用于取消；
+    // 回调在后台线程中执行，全部输出回调完成后才会回调 onCommandComplete
+    public static ShellExecutor.CommandFuture executeShellCommandAsync(String command, AdbCommandListener listener) {
+        return executeShellCommandAsync(command, ShellExecutor.NO_TIMEOUT, OutputPump.Overflow.BLOCK, listener);
+    }
 
-                int exitCode = process.waitFor();
+    // 输出量可能很大的命令（logcat、dumpsys 等）可选择丢弃来不及显示的行，丢弃的行数作为一行输出提示
+    public static ShellExecutor.CommandFuture executeShellCommandAsync(String command, OutputPump.Overflow overflow,
+                                                                      AdbCommandListener listener) {
+        return executeShellCommandAsync(command, ShellExecutor.NO_TIMEOUT, overflow, listener);
+    }
 
-                if (listener != null) {
-                    listener.onCommandComplete(exitCode); // 命令完成
+    // 超过 timeoutMs 仍未结束的命令会被结束，并以 TimeoutException 回调 onCommandError
+    public static ShellExecutor.CommandFuture executeShellCommandAsync(String command, long timeoutMs,
+                                                                      OutputPump.Overflow overflow,
+                                                                      AdbCommandListener listener) {
+        ShellExecutor.CommandFuture future = ShellExecutor.getDefault()
+                .execute(command, timeoutMs, toOutputListener(listener), overflow, OUTPUT_BUFFER_LINES);
+        if (listener != null) {
+            future.whenComplete((result, error) -> {
+                if (error == null) {
+                    listener.onCommandComplete(result.getExitCode()); // 命令完成
+                } else {
+                    listener.onCommandError(error instanceof Exception ? (Exception) error : new Exception(error)); // 发生错误
                 }
+            });
+        }
+        return future;
+    }
 
-            } catch (Exception e) {
-                if (listener != null) {
-                    listener.onCommandError(e);   // 发生错误
+    // 把命令的全部输出逐行写入 SAF 选择的文件，同时照常回调每行输出；内存中只保留监听器自己保留的部分。
+    // 写文件跟不上时命令会等待，文件中不会丢行；回调在后台线程中执行，文件关闭后才会回调 onCommandComplete。
+    // 命令被取消时已写入的输出同样会写完并关闭，随后以 CancellationException 回调 onCommandError
+    public static ShellExecutor.CommandFuture teeShellCommandToUri(Context context, String command, Uri destUri,
+                                                                  AdbCommandListener listener) {
+        OutputStream out;
+        try {
+            out = context.getContentResolver().openOutputStream(destUri);
+            if (out == null) {
+                throw new IOException("Failed to open output stream for URI: " + destUri);
+            }
+        } catch (IOException e) {
+            Log.e("AdbHelper", "Failed to open destination", e);
+            ShellExecutor.CommandFuture failed = new ShellExecutor.CommandFuture();
+            failed.completeExceptionally(e);
+            if (listener != null) {
+                listener.onCommandError(e);
+            }
+            return failed;
+        }
+        OutputTee tee = new OutputTee(out, toOutputListener(listener));
+        ShellExecutor.CommandFuture future = ShellExecutor.getDefault()
+                .execute(command, ShellExecutor.NO_TIMEOUT, tee, OutputPump.Overflow.BLOCK, OUTPUT_BUFFER_LINES);
+        // 取消时 whenComplete 会在主线程中执行，关闭文件放到后台
+        future.whenCompleteAsync((result, error) -> {
+            Throwable failure = error;
+            try {
+                tee.close();
+            } catch (IOException e) {
+                Log.w("AdbHelper", "Failed to write output to " + destUri, e);
+                // 停止后文件仍然保存，写入失败时报告写入错误而不是取消
+                if (failure == null || failure instanceof CancellationException) {
+                    failure = e;
                 }
-            } finally {
-                // 关闭 OutputStream
-                if (outputStream != null) {
-                    try {
-                        outputStream.close();
-                    } catch (IOException e) {
-                        if (listener != null) {
-                            listener.onCommandError(e);
-                        }
-                    }
+            }
+            if (listener != null) {
+                if (failure == null) {
+                    listener.onCommandComplete(result.getExitCode());
+                } else {
+                    listener.onCommandError(failure instanceof Exception ? (Exception) failure : new Exception(failure));
                 }
             }
-        });
+        }, teeCloseExecutor);
+        return future;
+    }
+
+    private static ShellExecutor.OutputListener toOutputListener(AdbCommandListener listener) {
+        if (listener == null) {
+            return null;
+        }
+        return new ShellExecutor.OutputListener() {
+            @Override
+            public void onOutputLine(String line) {
+                listener.onCommandOutput(line); // 每行输出
+            }
+
+            @Override
+            public void onLinesDropped(int count) {
+                listener.onCommandOutput("[" + count + " lines skipped]");
+            }
+        };
+    }
+
+    // 把命令的二进制输出（screencap -p、tar 等）直接写入 SAF 选择的文件，不经过字符串；回调在主线程中执行
+    public static ShellExecutor.CommandFuture streamShellCommandToUri(Context context, String command, Uri destUri,
+                                                                     AdbCommandListener listener) {
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        OutputStream out;
+        try {
+            out = context.getContentResolver().openOutputStream(destUri);
+            if (out == null) {
+                throw new IOException("Failed to open output stream for URI: " + destUri);
+            }
+        } catch (IOException e) {
+            Log.e("AdbHelper", "Failed to open destination", e);
+            ShellExecutor.CommandFuture failed = new ShellExecutor.CommandFuture();
+            failed.completeExceptionally(e);
+            if (listener != null) {
+                mainHandler.post(() -> listener.onCommandError(e));
+            }
+            return failed;
+        }
+        // 每次读取的整块数据直接写入目标文件
+        ShellExecutor.CommandFuture future = ShellExecutor.getDefault()
+                .executeBinary(command, ShellExecutor.NO_TIMEOUT, out);
+        // 统计记录在读取线程停止写入后才完成，此时关闭文件不会与写入并发；取消时也要等读取结束，关闭放到后台
+        future.getRecord().thenRunAsync(() -> {
+            IOException closeFailure = null;
+            try {
+                out.close();
+            } catch (IOException e) {
+                Log.w("AdbHelper", "Failed to write output to " + destUri, e);
+                closeFailure = e;
+            }
+            if (listener == null) {
+                return;
+            }
+            IOException writeFailure = closeFailure;
+            // 命令此时已经结束，回调立即在当前线程中执行
+            future.whenComplete((result, error) -> {
+                Throwable failure = error;
+                if (writeFailure != null && (failure == null || failure instanceof CancellationException)) {
+                    failure = writeFailure;
+                }
+                if (failure == null) {
+                    mainHandler.post(() -> listener.onCommandComplete(result.getExitCode()));
+                } else {
+                    Exception exception = failure instanceof Exception ? (Exception) failure : new Exception(failure);
+                    mainHandler.post(() -> listener.onCommandError(exception));
+                }
+            });
+        }, teeCloseExecutor);
+        return future;
     }
 
     // 卸载应用
-    public static void uninstallApp(String packageName, AdbCommandListener listener) {
+    public static ShellExecutor.CommandFuture uninstallApp(String packageName, AdbCommandListener listener) {
         //executeAdbCommandAsync("adb uninstall " + packageName, listener);  //普通卸载
-        executeShellCommandAsync("pm uninstall " + packageName, listener); //通过shell的方式静默卸载
+        return executePmCommand("pm uninstall " + packageName, listener); //通过shell的方式静默卸载
     }
 
 
     // 禁用应用
-    public static void disableApp(String packageName, AdbCommandListener listener) {
+    public static ShellExecutor.CommandFuture disableApp(String packageName, AdbCommandListener listener) {
         //executeAdbCommandAsync("adb shell pm disable-user " + packageName, listener);
-        executeShellCommandAsync("pm disable-user " + packageName, listener); //通过shell的方式
+        return executePmCommand("pm disable-user " + packageName, listener); //通过shell的方式
     }
 
     // 启用应用
-    public static void enableApp(String packageName, AdbCommandListener listener) {
+    public static ShellExecutor.CommandFuture enableApp(String packageName, AdbCommandListener listener) {
         //executeAdbCommandAsync("adb shell pm enable " + packageName, listener);
-        executeShellCommandAsync("pm enable " + packageName, listener);
+        return executePmCommand("pm enable " + packageName, listener);
     }
 
+    // 返回的句柄可用于取消，取消时会结束命令启动的全部进程
+    private static ShellExecutor.CommandFuture executePmCommand(String command, AdbCommandListener listener) {
+        return executeShellCommandAsync(command, PM_TIMEOUT_MS, OutputPump.Overflow.BLOCK, listener);
+    }
 
-    // 提取应用安装包（APK）
+    // 各条 shell 命令的排队、启动、执行耗时和输出量，用于分析批量操作的时间花在哪里
+    public static ShellStats getShellStats() {
+        return ShellExecutor.getDefault().getStats();
+    }
+
+
+    // 提取应用安装包（APK）；应用无权直接读取的安装包通过 shell 以二进制方式读出
     public static void extractApk(Context context, String sourceApkPath, Uri destUri, AdbCommandListener listener) {
         executorService.execute(() -> {
+            File sourceFile = new File(sourceApkPath);
+            if (!sourceFile.canRead()) {
+                streamShellCommandToUri(context, "cat " + ShellSession.quote(sourceApkPath), destUri, listener);
+                return;
+            }
             try {
-                File sourceFile = new File(sourceApkPath);
                 try (InputStream in = new FileInputStream(sourceFile);
                      OutputStream out = context.getContentResolver().openOutputStream(destUri)) {
 
@@ -0,0 +1,125 @@
+package com.treelang.mean.utils;
+
+import android.content.pm.ApplicationInfo;
+
+import java.lang.reflect.Field;
+
+/**
+ * Sorts packages into the core / privileged / system / user categories shown in the tabs.
+ * <p>
+ * The install location comes from {@link PartitionMatcher}. The hidden
+ * {@code ApplicationInfo.privateFlags} field is resolved once per process; when it is not
+ * accessible the privileged check falls back to the install location alone. The decision itself
+ * only depends on plain values, so it can be exercised with hand-made inputs.
+ */
+public class AppClassifier {
+
+    public enum Category {
+        CORE,
+        PRIVILEGED,
+        SYSTEM,
+        USER
+    }
+
+    /**
+     * Reads the privileged bit of an application. Returns null when the bit cannot be read.
+     */
+    public interface PrivilegedFlagReader {
+        Boolean hasPrivilegedFlag(ApplicationInfo applicationInfo);
+    }
+
+    private static final AppClassifier DEFAULT =
+            new AppClassifier(PartitionMatcher.getDefault(), new ReflectivePrivilegedFlagReader());
+
+    private final PartitionMatcher partitionMatcher;
+    private final PrivilegedFlagReader privilegedFlagReader;
+
+    public AppClassifier(PartitionMatcher partitionMatcher, PrivilegedFlagReader privilegedFlagReader) {
+        this.partitionMatcher = partitionMatcher;
+        this.privilegedFlagReader = privilegedFlagReader;
+    }
+
+    public static AppClassifier getDefault() {
+        return DEFAULT;
+    }
+
+    public Category classify(ApplicationInfo applicationInfo) {
+        return classify(applicationInfo.flags, partitionMatcher.match(applicationInfo.sourceDir),
+                privilegedFlagReader.hasPrivilegedFlag(applicationInfo));
+    }
+
+    /**
+     * Classifies a package from its {@code ApplicationInfo.flags}, source directory and privileged bit.
+     * A null privileged bit means it is unknown and only the directory is checked.
+     */
+    public static Category classify(int flags, String sourceDir, Boolean privilegedFlag) {
+        return classify(flags, PartitionMatcher.getDefault().match(sourceDir), privilegedFlag);
+    }
+
+    /**
+     * Classifies a package installed at {@code location}. Categories don't overlap:
+     * core > privileged > system > user.
+     */
+    public static Category classify(int flags, PartitionMatcher.Location location, Boolean privilegedFlag) {
+        boolean hasSystemFlag = (flags & ApplicationInfo.FLAG_SYSTEM) != 0;
+        if (!location.isReadOnlyPartition()) {
+            return Category.USER;
+        }
+
+        if (hasSystemFlag) {
+            switch (location.dirKind) {
+                case APP:
+                    // system 分区 app 目录下的为核心应用，其余分区的为系统应用
+                    return location.partition == PartitionMatcher.Partition.SYSTEM ? Category.CORE : Category.SYSTEM;
+                case PRIV_APP:
+                    if (privilegedFlag == null || privilegedFlag) {
+                        return Category.PRIVILEGED;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } else if (location.dirKind == PartitionMatcher.DirKind.DATA_APP) {
+            // data-app 目录下的可卸载系统应用
+            return Category.SYSTEM;
+        }
+        return Category.USER;
+    }
+
+    /**
+     * Reads the hidden {@code privateFlags} field through reflection handles resolved once.
+     */
+    static class ReflectivePrivilegedFlagReader implements PrivilegedFlagReader {
+        private final Field privateFlagsField;
+        private final int privilegedFlag;
+
+        ReflectivePrivilegedFlagReader() {
+            Field field = null;
+            int flag = 0;
+            try {
+                field = ApplicationInfo.class.getDeclaredField("privateFlags");
+                field.setAccessible(true);
+                Field privilegedFlagField = ApplicationInfo.class.getDeclaredField("PRIVATE_FLAG_PRIVILEGED");
+                privilegedFlagField.setAccessible(true);
+                flag = privilegedFlagField.getInt(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // 隐藏 API 被限制时退回到只按目录判断
+                field = null;
+            }
+            privateFlagsField = field;
+            privilegedFlag = flag;
+        }
+
+        @Override
+        public Boolean hasPrivilegedFlag(ApplicationInfo applicationInfo) {
+            if (privateFlagsField == null) {
+                return null;
+            }
+            try {
+                return (privateFlagsField.getInt(applicationInfo) & privilegedFlag) != 0;
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.treelang.mean.utils;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Process;
+import android.util.Log;
+
+import com.treelang.mean.data.AppInfo;
+import com.treelang.mean.data.AppStore;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts the installed package list into a categorized {@link AppInfo} inventory.
+ * All apps of a load are rows of one {@link AppStore}, row i holding package i.
+ * The package list is split into fixed-size chunks which are converted in parallel on a
+ * worker pool sized to the device's cores, then merged back in the original package order.
+ * <p>
+ * Loading happens in two phases: {@link #load} only reads fields already present in
+ * {@link PackageInfo} so rows can be shown right away, and {@link #enrich} then fills in
+ * labels, installer and size chunk by chunk.
+ */
+public class AppLoader {
+    private static final String TAG = "AppLoader";
+    // 每个分块处理的包数量
+    private static final int CHUNK_SIZE = 32;
+    // 每处理多少个包上报一次进度
+    private static final int PROGRESS_STEP = 10;
+
+    private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final AtomicInteger threadCount = new AtomicInteger(0);
+    private static final ThreadPoolExecutor workerPool = createWorkerPool();
+
+    public interface ProgressListener {
+        void onProgress(int processed, int total);
+    }
+
+    public interface EnrichListener {
+        // 一个分块补充完成，在工作线程中回调；补充的信息需要在主线程中调用 Enrichment.apply 写入
+        void onChunkEnriched(List<Enrichment> enrichments);
+    }
+
+    /**
+     * Label, installer and size of one app, resolved on a worker thread but not yet visible in the
+     * app itself. Published apps are read by the UI on the main thread, so {@link #apply} copies
+     * the values over there in one step instead of the workers writing them while rows are bound,
+     * sorted or searched.
+     */
+    public static class Enrichment {
+        private final AppInfo target;
+        private final String appName;
+        private final String installerPackageName;
+        private final long appSize;
+
+        Enrichment(AppInfo target, String appName, String installerPackageName, long appSize) {
+            this.target = target;
+            this.appName = appName;
+            this.installerPackageName = installerPackageName;
+            this.appSize = appSize;
+        }
+
+        public String getPackageName() {
+            return target.getPackageName();
+        }
+
+        // 在主线程中调用
+        public void apply() {
+            target.setAppName(appName);
+            target.setInstallerPackageName(installerPackageName);
+            target.setAppSize(appSize);
+        }
+    }
+
+    /**
+     * The apps produced by a load: one master list plus a membership bit set per category.
+     * The per-tab lists are read-only projections of the master list, built once and cached.
+     * An app may belong to more than one category.
+     */
+    public static class Result {
+        // 分类编号与标签页位置一致
+        public static final int CATEGORY_USER = 0;
+        public static final int CATEGORY_SYSTEM = 1;
+        public static final int CATEGORY_PRIVILEGED = 2;
+        public static final int CATEGORY_CORE = 3;
+        private static final int CATEGORY_COUNT = 4;
+
+        private final List<AppInfo> apps;
+        private final BitSet[] members = new BitSet[CATEGORY_COUNT];
+        private final List<?>[] projections = new List<?>[CATEGORY_COUNT];
+
+        // 与包列表一一对应的分块转换结果，供第二阶段使用
+        private final List<Chunk> chunks;
+
+        Result(int initialCapacity, int chunkCount) {
+            chunks = new ArrayList<>(chunkCount);
+            apps = new ArrayList<>(initialCapacity);
+            for (int i = 0; i < CATEGORY_COUNT; i++) {
+                members[i] = new BitSet(initialCapacity);
+            }
+        }
+
+        // 加入主列表，并按应用类型标记所属分类
+        void add(AppInfo appInfo, boolean isUserApp) {
+            int index = apps.size();
+            apps.add(appInfo);
+            // 各类应用可能会重叠，一个应用可能同时属于多个类别
+            members[CATEGORY_USER].set(index, isUserApp);
+            members[CATEGORY_SYSTEM].set(index, appInfo.isSystemApp());
+            members[CATEGORY_PRIVILEGED].set(index, appInfo.isPrivilegedApp());
+            members[CATEGORY_CORE].set(index, appInfo.isCoreApp());
+        }
+
+        // 主列表中的全部应用，只读
+        public List<AppInfo> getAllApps() {
+            return Collections.unmodifiableList(apps);
+        }
+
+        /**
+         * Returns the read-only list of apps in the given category, in master list order.
+         * Repeated calls return the same instance.
+         */
+        @SuppressWarnings("unchecked")
+        public synchronized List<AppInfo> getApps(int category) {
+            if (category < 0 || category >= CATEGORY_COUNT) {
+                return Collections.emptyList();
+            }
+            if (projections[category] == null) {
+                projections[category] = new Projection(apps, members[category]);
+            }
+            return (List<AppInfo>) projections[category];
+        }
+
+        /**
+         * Returns the converted apps in package list order, with null for packages that failed to convert.
+         */
+        public List<AppInfo> getAppsInPackageOrder() {
+            List<AppInfo> apps = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                Collections.addAll(apps, chunk.apps);
+            }
+            return apps;
+        }
+    }
+
+    // 主列表按分类位集合投影出的只读列表，只保存下标
+    private static class Projection extends AbstractList<AppInfo> implements RandomAccess {
+        private final List<AppInfo> apps;
+        private final int[] indices;
+
+        Projection(List<AppInfo> apps, BitSet members) {
+            this.apps = apps;
+            indices = members.stream().toArray();
+        }
+
+        @Override
+        public AppInfo get(int index) {
+            return apps.get(indices[index]);
+        }
+
+        @Override
+        public int size() {
+            return indices.length;
+        }
+    }
+
+    // 一个分块的转换结果；restored 标记从快照恢复、第二阶段无需补充的应用
+    private static class Chunk {
+        final AppInfo[] apps;
+        final boolean[] restored;
+
+        Chunk(int size) {
+            apps = new AppInfo[size];
+            restored = new boolean[size];
+        }
+    }
+
+    private static ThreadPoolExecutor createWorkerPool() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "app-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 空闲时释放线程，加载只在启动和刷新时发生
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Converts and categorizes the given packages. Packages whose snapshot entry is still current
+     * are restored from the snapshot instead of being resolved again; pass null to resolve all.
+     * Blocks the calling thread until all chunks are done, so it must not be called from the main
+     * thread or from the worker pool itself.
+     */
+    public static Result load(PackageManager pm, List<PackageInfo> packages, InventorySnapshot snapshot,
+                              ProgressListener listener) throws InterruptedException, ExecutionException {
+        int total = packages.size();
+        ProgressTracker progress = new ProgressTracker(total, listener);
+        // 每个分块只写入自己范围内的行
+        AppStore store = new AppStore(total);
+
+        // 按顺序提交分块，合并时按同样的顺序读取结果，保证列表顺序与单线程加载一致
+        List<Future<Chunk>> chunks = new ArrayList<>((total + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        for (int start = 0; start < total; start += CHUNK_SIZE) {
+            int from = start;
+            int to = Math.min(start + CHUNK_SIZE, total);
+            chunks.add(workerPool.submit(() -> convertChunk(pm, packages, from, to, store, snapshot, progress)));
+        }
+
+        Result result = new Result(total, chunks.size());
+        try {
+            int offset = 0;
+            for (Future<Chunk> future : chunks) {
+                Chunk chunk = future.get();
+                result.chunks.add(chunk);
+                for (int i = 0; i < chunk.apps.length; i++) {
+                    AppInfo appInfo = chunk.apps[i];
+                    if (appInfo != null) {
+                        // 简化用户应用判断：只要不是系统应用标志位的，就认为是用户应用
+                        boolean isUserApp = (packages.get(offset + i).applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) == 0;
+                        result.add(appInfo, isUserApp);
+                    }
+                }
+                offset += chunk.apps.length;
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            for (Future<Chunk> chunk : chunks) {
+                chunk.cancel(true);
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Builds categorized lists straight from the snapshot, without querying the package manager.
+     * The apps have no icons; the result is only meant to be shown until a real load completes
+     * and cannot be passed to {@link #enrich}.
+     */
+    public static Result restore(InventorySnapshot snapshot) {
+        List<InventorySnapshot.Entry> entries = snapshot.getEntries();
+        Result result = new Result(entries.size(), 0);
+        AppStore store = new AppStore(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            InventorySnapshot.Entry entry = entries.get(i);
+            result.add(entry.toAppInfo(store.get(i)), entry.isUserApp());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of {@code previous} with only the given packages re-resolved. Packages that
+     * are no longer installed are removed, new packages are appended to the end of the list in
+     * package name order. The re-resolved apps are fully loaded; their icons are loaded by
+     * {@link IconLoader} when shown. If {@code snapshot} is not null, its entries of the changed
+     * packages are replaced as well; writing it is left to the caller.
+     */
+    public static Result update(PackageManager pm, Result previous, Set<String> changedPackages,
+                                InventorySnapshot snapshot) {
+        // 按包名顺序解析，新增的应用每次都以相同顺序追加
+        List<String> orderedPackages = new ArrayList<>(changedPackages);
+        Collections.sort(orderedPackages);
+        Map<String, AppInfo> resolved = new LinkedHashMap<>();
+        Map<String, Boolean> userApps = new HashMap<>();
+        List<PackageInfo> resolvedPackages = new ArrayList<>(orderedPackages.size());
+        // 变化的包共用一个存储，每个包一行
+        AppStore store = new AppStore(orderedPackages.size());
+        int row = 0;
+        for (String packageName : orderedPackages) {
+            try {
+                // 为当前用户卸载的包仍能查到，显示为已卸载
+                PackageInfo packageInfo = pm.getPackageInfo(packageName, PackageManager.MATCH_UNINSTALLED_PACKAGES);
+                AppInfo appInfo = AppUtils.getAppInfoFromPackageInfo(pm, packageInfo, store.get(row++));
+                if (appInfo != null) {
+                    AppUtils.enrichAppInfo(pm, packageInfo, appInfo);
+                    resolved.put(packageName, appInfo);
+                    resolvedPackages.add(packageInfo);
+                    userApps.put(packageName, (packageInfo.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) == 0);
+                }
+            } catch (PackageManager.NameNotFoundException e) {
+                // 已完全卸载，从列表中移除
+            }
+        }
+        if (snapshot != null) {
+            List<AppInfo> resolvedApps = new ArrayList<>(resolvedPackages.size());
+            for (PackageInfo packageInfo : resolvedPackages) {
+                resolvedApps.add(resolved.get(packageInfo.packageName));
+            }
+            snapshot.update(changedPackages, resolvedPackages, resolvedApps);
+        }
+
+        // 未变化的应用保留原有分类，变化的应用在原位置替换
+        Result result = new Result(previous.apps.size() + resolved.size(), 0);
+        for (int i = 0; i < previous.apps.size(); i++) {
+            String packageName = previous.apps.get(i).getPackageName();
+            if (!changedPackages.contains(packageName)) {
+                result.add(previous.apps.get(i), previous.members[Result.CATEGORY_USER].get(i));
+            } else {
+                AppInfo appInfo = resolved.remove(packageName);
+                if (appInfo != null) {
+                    result.add(appInfo, userApps.get(packageName));
+                }
+            }
+        }
+        for (Map.Entry<String, AppInfo> entry : resolved.entrySet()) {
+            result.add(entry.getValue(), userApps.get(entry.getKey()));
+        }
+        return result;
+    }
+
+    /**
+     * Second phase: loads labels, installer and size for the apps of a previous {@link #load}
+     * result. Chunks are enriched in parallel and reported as soon as each one is done; the apps
+     * themselves are only changed once the listener applies the {@link Enrichment}s. Blocks
+     * until every chunk has been enriched. Icons are not loaded here; {@link IconLoader} loads
+     * them for the rows that are actually shown.
+     */
+    public static void enrich(PackageManager pm, List<PackageInfo> packages, Result result, EnrichListener listener)
+            throws InterruptedException, ExecutionException {
+        List<Future<?>> tasks = new ArrayList<>(result.chunks.size());
+        int offset = 0;
+        for (Chunk chunk : result.chunks) {
+            int from = offset;
+            tasks.add(workerPool.submit(() -> enrichChunk(pm, packages, chunk, from, listener)));
+            offset += chunk.apps.length;
+        }
+
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            for (Future<?> task : tasks) {
+                task.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    private static void enrichChunk(PackageManager pm, List<PackageInfo> packages, Chunk chunk, int from,
+                                    EnrichListener listener) {
+        List<Enrichment> enriched = new ArrayList<>(chunk.apps.length);
+        for (int i = 0; i < chunk.apps.length; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            AppInfo appInfo = chunk.apps[i];
+            // 快照中恢复的应用已有名称、安装来源和大小，不需要补充
+            if (appInfo == null || chunk.restored[i]) {
+                continue;
+            }
+            // 已发布的应用由界面读取，这里只解析出补充的值
+            PackageInfo packageInfo = packages.get(from + i);
+            try {
+                enriched.add(new Enrichment(appInfo, AppUtils.loadAppLabel(pm, packageInfo),
+                        AppUtils.getInstallerPackageName(pm, packageInfo), AppUtils.getApkSize(packageInfo)));
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to enrich " + packageInfo.packageName, e);
+            }
+        }
+        if (listener != null && !enriched.isEmpty()) {
+            listener.onChunkEnriched(enriched);
+        }
+    }
+
+    private static Chunk convertChunk(PackageManager pm, List<PackageInfo> packages, int from, int to,
+                                      AppStore store, InventorySnapshot snapshot, ProgressTracker progress) {
+        Chunk chunk = new Chunk(to - from);
+        for (int i = from; i < to; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            PackageInfo packageInfo = packages.get(i);
+            AppInfo appInfo = store.get(i);
+            if (snapshot != null && snapshot.restore(packageInfo, appInfo)) {
+                // 启用、卸载状态变化不会改变快照的键，需要按当前包信息重新设置
+                AppUtils.applyPackageState(packageInfo, appInfo);
+                chunk.apps[i - from] = appInfo;
+                chunk.restored[i - from] = true;
+            } else {
+                chunk.apps[i - from] = AppUtils.getAppInfoFromPackageInfo(pm, packageInfo, appInfo);
+            }
+            progress.increment();
+        }
+        return chunk;
+    }
+
+    /**
+     * Counts processed packages across workers and reports progress in increasing order only,
+     * so a slow worker can never post a smaller count after a faster one.
+     */
+    private static class ProgressTracker {
+        private final int total;
+        private final ProgressListener listener;
+        private final AtomicInteger processedCount = new AtomicInteger(0);
+        private int lastReported = 0;
+
+        ProgressTracker(int total, ProgressListener listener) {
+            this.total = total;
+            this.listener = listener;
+        }
+
+        void increment() {
+            int processed = processedCount.incrementAndGet();
+            if (listener == null || (processed % PROGRESS_STEP != 0 && processed != total)) {
+                return;
+            }
+            synchronized (this) {
+                if (processed > lastReported) {
+                    lastReported = processed;
+                    listener.onProgress(processed, total);
+                }
+            }
+        }
+    }
+}
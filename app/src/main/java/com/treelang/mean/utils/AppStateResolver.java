@@ -0,0 +1,108 @@
+package com.treelang.mean.utils;
+
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
+
+import com.treelang.mean.data.AppInfo;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves the Installed / Disabled / Uninstalled state of apps.
+ * <p>
+ * The state is read from {@link ApplicationInfo} first. This requires the bulk query to use
+ * {@code MATCH_UNINSTALLED_PACKAGES}, so that packages uninstalled for the current user are
+ * still listed. On top of that, the package manager's own view is fetched in a single shell
+ * round-trip ({@code pm list packages -d}, {@code -u} and plain) and merged into the
+ * inventory. The shell view wins for every package it reports.
+ */
+public class AppStateResolver {
+    private static final String TAG = "AppStateResolver";
+    private static final String SECTION_MARKER = "--mean-section--";
+    private static final String PACKAGE_PREFIX = "package:";
+    private static final long SHELL_TIMEOUT_MS = 10_000;
+
+    /**
+     * Package states as reported by {@code pm list packages}.
+     */
+    public static class ShellStates {
+        final Set<String> disabled = new HashSet<>();
+        final Set<String> installed = new HashSet<>();
+        final Set<String> uninstalled = new HashSet<>();
+    }
+
+    // 按分隔行把输出分成三部分，只保留 package: 开头的行；错误行会被忽略
+    private static class SectionCollector implements ShellExecutor.OutputListener {
+        final List<Set<String>> sections = List.of(new HashSet<>(), new HashSet<>(), new HashSet<>());
+        int section = 0;
+
+        @Override
+        public void onOutputLine(String line) {
+            if (line.equals(SECTION_MARKER)) {
+                section++;
+            } else if (line.startsWith(PACKAGE_PREFIX) && section < sections.size()) {
+                sections.get(section).add(line.substring(PACKAGE_PREFIX.length()).trim());
+            }
+        }
+    }
+
+    // 按 ApplicationInfo 得到应用状态
+    public static String statusOf(ApplicationInfo applicationInfo) {
+        if ((applicationInfo.flags & ApplicationInfo.FLAG_INSTALLED) == 0) {
+            return "Uninstalled";
+        }
+        return applicationInfo.enabled ? "Installed" : "Disabled";
+    }
+
+    /**
+     * Starts the shell query on the shared {@link ShellExecutor}. The future completes with null
+     * if the shell is not available, the query timed out or its output could not be parsed.
+     */
+    public static CompletableFuture<ShellStates> queryShellStatesAsync() {
+        // 三次查询放在同一个 shell 中执行，以分隔行区分各部分输出
+        String command = "pm list packages -d; echo " + SECTION_MARKER
+                + "; pm list packages -u; echo " + SECTION_MARKER
+                + "; pm list packages";
+        SectionCollector collector = new SectionCollector();
+        return ShellExecutor.getDefault().execute(command, SHELL_TIMEOUT_MS, collector)
+                .handle((result, error) -> {
+                    if (error != null) {
+                        Log.w(TAG, "Failed to query package states: " + error);
+                        return null;
+                    }
+                    // 输出行全部交给监听器后命令才会结束，这里可以直接读取
+                    List<Set<String>> sections = collector.sections;
+                    if (!result.isSuccess() || collector.section != sections.size() - 1 || sections.get(2).isEmpty()) {
+                        Log.w(TAG, "Unexpected output from pm, ignoring shell states");
+                        return null;
+                    }
+                    ShellStates states = new ShellStates();
+                    states.disabled.addAll(sections.get(0));
+                    states.installed.addAll(sections.get(2));
+                    // -u 同时列出已安装和已为当前用户卸载的包，减去已安装的即为已卸载
+                    states.uninstalled.addAll(sections.get(1));
+                    states.uninstalled.removeAll(states.installed);
+                    return states;
+                });
+    }
+
+    /**
+     * Overrides the status of every app the shell reported on. Apps the shell did not list keep
+     * the state read from their {@link ApplicationInfo}.
+     */
+    public static void merge(List<AppInfo> apps, ShellStates states) {
+        for (AppInfo appInfo : apps) {
+            String packageName = appInfo.getPackageName();
+            if (states.uninstalled.contains(packageName)) {
+                appInfo.setStatus("Uninstalled");
+            } else if (states.disabled.contains(packageName)) {
+                appInfo.setStatus("Disabled");
+            } else if (states.installed.contains(packageName)) {
+                appInfo.setStatus("Installed");
+            }
+        }
+    }
+}
@@ -1,42 +1,55 @@
 package com.treelang.mean.utils;
 
 import android.content.pm.ApplicationInfo;
+import android.content.pm.ComponentInfo;
 import android.content.pm.InstallSourceInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.util.LruCache;
 
 import com.treelang.mean.data.AppInfo;
 
 import java.io.File;
-import java.lang.reflect.Field;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AppUtils {
-    // 添加图标缓存
-    private static final int ICON_CACHE_SIZE = 100; // 缓存大小
-    private static final LruCache<String, Drawable> iconCache = new LruCache<>(ICON_CACHE_SIZE);
-
-    // 从缓存获取图标，如不存在则返回null
-    public static Drawable getIconFromCache(String packageName) {
-        return iconCache.get(packageName);
+    // 应用名称缓存，第一阶段加载时直接使用，避免每次都解析资源
+    private static final Map<String, String> labelCache = new ConcurrentHashMap<>();
+    // 活动等组件的名称缓存，按条数限制大小
+    private static final LruCache<String, String> componentLabelCache = new LruCache<>(2048);
+
+    // 获取第一阶段使用的应用名称：优先缓存，其次清单中的非本地化名称，最后退回包名
+    private static String getQuickLabel(PackageInfo packageInfo) {
+        String cachedLabel = labelCache.get(packageInfo.packageName);
+        if (cachedLabel != null) {
+            return cachedLabel;
+        }
+        CharSequence nonLocalizedLabel = packageInfo.applicationInfo.nonLocalizedLabel;
+        if (nonLocalizedLabel != null) {
+            return nonLocalizedLabel.toString();
+        }
+        return packageInfo.packageName;
     }
 
-    // 添加图标到缓存
-    public static void addIconToCache(String packageName, Drawable icon) {
-        if (packageName != null && icon != null) {
-            iconCache.put(packageName, icon);
+    //获取活动等组件的名称，未缓存时解析资源，可在后台线程预先调用
+    public static String getComponentLabel(PackageManager pm, ComponentInfo componentInfo) {
+        String key = componentInfo.packageName + "/" + componentInfo.name;
+        String label = componentLabelCache.get(key);
+        if (label == null) {
+            label = componentInfo.loadLabel(pm).toString();
+            componentLabelCache.put(key, label);
         }
+        return label;
     }
 
-    //从PackageInfo提取并填充AppInfo,
-    public static AppInfo getAppInfoFromPackageInfo(PackageManager pm, PackageInfo packageInfo) {
-        AppInfo appInfo = new AppInfo();
+    //从PackageInfo提取并填充AppInfo（第一阶段）,
+    //只读取PackageInfo中已有的字段，不加载资源和图标，保证列表能尽快显示；填充到已分配的行中，批量加载时所有应用共用一个 AppStore
+    public static AppInfo getAppInfoFromPackageInfo(PackageManager pm, PackageInfo packageInfo, AppInfo appInfo) {
         try {
-            appInfo.setAppName(packageInfo.applicationInfo.loadLabel(pm).toString());
+            appInfo.setAppName(getQuickLabel(packageInfo));
             appInfo.setPackageName(packageInfo.packageName);
             appInfo.setVersionName(packageInfo.versionName);
             appInfo.setVersionCode((int) packageInfo.getLongVersionCode());
@@ -64,37 +77,12 @@ public class AppUtils {
                 }
             }
 
-            // 获取安装来源
-            try {
-                String installingPackageName = null;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-                    InstallSourceInfo sourceInfo = pm.getInstallSourceInfo(packageInfo.packageName);
-                    installingPackageName = sourceInfo.getInstallingPackageName();
-                } else {
-                    // 使用API 28兼容的方法获取安装源
-                    installingPackageName = pm.getInstallerPackageName(packageInfo.packageName);
-                }
-                appInfo.setInstallerPackageName(installingPackageName != null ? installingPackageName : "未知来源");
-            } catch (PackageManager.NameNotFoundException e) {
-                appInfo.setInstallerPackageName("未知来源");
-            }
-
-            // 直接同步加载图标 - 修复问题
-            // 异步加载会导致初始显示问题，我们改回同步加载
-            appInfo.setAppIcon(packageInfo.applicationInfo.loadIcon(pm));
-
-            // 添加到缓存，以便后续使用
-            addIconToCache(packageInfo.packageName, appInfo.getAppIcon());
-
             // 设置应用类型标志
             setAppTypeFlags(packageInfo, appInfo);
 
-            //设置大小
-            appInfo.setAppSize(getApkSize(packageInfo));
+            applyPackageState(packageInfo, appInfo);
 
-            // 设置新增信息
-            appInfo.setDataPath("/data/user/0/" + packageInfo.packageName);
-            appInfo.setExternalDataPath("/storage/emulated/0/Android/data/" + packageInfo.packageName);
+            // 设置新增信息，数据目录由包名在需要时拼接
             appInfo.setApkPath(packageInfo.applicationInfo.sourceDir);
             appInfo.setUid(packageInfo.applicationInfo.uid);
 
@@ -105,109 +93,63 @@ public class AppUtils {
         }
     }
 
-    // 获取 APK 文件大小
-    public static long getApkSize(PackageInfo packageInfo) {
-        File apkFile = new File(packageInfo.applicationInfo.publicSourceDir);
-        if (apkFile.exists()) {
-            return apkFile.length();
-        }
-        return 0;
+    //按包信息中的启用、安装状态设置应用状态，包变化广播触发的增量更新依赖这里得到禁用后的状态
+    public static void applyPackageState(PackageInfo packageInfo, AppInfo appInfo) {
+        appInfo.setStatus(AppStateResolver.statusOf(packageInfo.applicationInfo));
     }
 
-    private static void setAppTypeFlags(PackageInfo packageInfo, AppInfo appInfo) {
-        //是否是系统应用
-        boolean isSystem = isSystemApp(packageInfo);
-        //是否是特权应用
-        boolean isPrivileged = isPrivilegedApp(packageInfo);
-        //是否是核心应用
-        boolean isCore = isCoreApp(packageInfo);
-
-        // 不允许重叠的分类逻辑：优先级 核心应用 > 特权应用 > 系统应用 > 用户应用
-        if (isCore) {
-            appInfo.setCoreApp(true);
-            appInfo.setSystemApp(false);
-            appInfo.setPrivilegedApp(false);
-            appInfo.setUserApp(false);
-        } else if (isPrivileged) {
-            appInfo.setCoreApp(false);
-            appInfo.setSystemApp(false);
-            appInfo.setPrivilegedApp(true);
-            appInfo.setUserApp(false);
-        } else if (isSystem) {
-            appInfo.setCoreApp(false);
-            appInfo.setSystemApp(true);
-            appInfo.setPrivilegedApp(false);
-            appInfo.setUserApp(false);
-        } else {
-            // 如果不是核心、特权或系统应用，则为用户应用
-            appInfo.setCoreApp(false);
-            appInfo.setSystemApp(false);
-            appInfo.setPrivilegedApp(false);
-            appInfo.setUserApp(true);
+    //第二阶段：补充需要解析资源或访问文件的信息（名称、安装来源、大小），图标由 IconCache 加载
+    public static void enrichAppInfo(PackageManager pm, PackageInfo packageInfo, AppInfo appInfo) {
+        try {
+            appInfo.setAppName(loadAppLabel(pm, packageInfo));
+            appInfo.setInstallerPackageName(getInstallerPackageName(pm, packageInfo));
+            //设置大小
+            appInfo.setAppSize(getApkSize(packageInfo));
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
 
-    //判断是否是系统应用,判断flag和位置
-    private static boolean isSystemApp(PackageInfo packageInfo) {
-        String sourceDir = packageInfo.applicationInfo.sourceDir;
-        // 检查是否在系统目录下的不可卸载应用
-        boolean isSystemUnremovable = ((packageInfo.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0) && (
-                // product 目录下的不可卸载应用
-                sourceDir.startsWith("/system/product/app/") || sourceDir.startsWith("/product/app/") ||
-                        // system_ext 目录
-                        sourceDir.startsWith("/system/system_ext/app/") || sourceDir.startsWith("/system_ext/app/") ||
-                        // vendor 目录
-                        sourceDir.startsWith("/system/vendor/app/") || sourceDir.startsWith("/vendor/app/") ||
-                        // oem 目录
-                        sourceDir.startsWith("/system/oem/app/") || sourceDir.startsWith("/oem/app/"));
-
-        // 检查是否在data-app目录下的可卸载系统应用
-        boolean isSystemRemovable = ((packageInfo.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) == 0) && (sourceDir.startsWith("/system/product/data-app/") || sourceDir.startsWith("/product/data-app/") || sourceDir.startsWith("/system/system_ext/data-app/") || sourceDir.startsWith("/system_ext/data-app/"));
-
-        return isSystemUnremovable || isSystemRemovable;
+    // 解析应用名称并放入缓存，下次第一阶段加载时直接使用
+    public static String loadAppLabel(PackageManager pm, PackageInfo packageInfo) {
+        String label = packageInfo.applicationInfo.loadLabel(pm).toString();
+        labelCache.put(packageInfo.packageName, label);
+        return label;
     }
 
-    //是否是特权应用
-    private static boolean isPrivilegedApp(PackageInfo packageInfo) {
+    // 获取安装来源
+    public static String getInstallerPackageName(PackageManager pm, PackageInfo packageInfo) {
         try {
-            Class<?> applicationInfoClass = ApplicationInfo.class;
-            Field privateFlagsField = applicationInfoClass.getDeclaredField("privateFlags");
-            privateFlagsField.setAccessible(true);
-            Field privilegedFlagField = applicationInfoClass.getDeclaredField("PRIVATE_FLAG_PRIVILEGED");
-            privilegedFlagField.setAccessible(true);
-            int PRIVATE_FLAG_PRIVILEGED = (int) privilegedFlagField.get(null);
-            int privateFlags = (int) privateFlagsField.get(packageInfo.applicationInfo);
-            boolean hasPrivilegedFlag = (privateFlags & PRIVATE_FLAG_PRIVILEGED) != 0;
+            String installingPackageName;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                InstallSourceInfo sourceInfo = pm.getInstallSourceInfo(packageInfo.packageName);
+                installingPackageName = sourceInfo.getInstallingPackageName();
+            } else {
+                // 使用API 28兼容的方法获取安装源
+                installingPackageName = pm.getInstallerPackageName(packageInfo.packageName);
+            }
+            return installingPackageName != null ? installingPackageName : "未知来源";
+        } catch (PackageManager.NameNotFoundException e) {
+            return "未知来源";
+        }
+    }
 
-            String sourceDir = packageInfo.applicationInfo.sourceDir;
-            // 检查是否在特权应用目录下的不可卸载应用
-            boolean isInPrivilegedDir = ((packageInfo.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0) && (
-                    // system priv-app
-                    sourceDir.startsWith("/system/priv-app/") ||
-                            // system_ext priv-app
-                            sourceDir.startsWith("/system/system_ext/priv-app/") || sourceDir.startsWith("/system_ext/priv-app/") ||
-                            // product priv-app
-                            sourceDir.startsWith("/system/product/priv-app/") || sourceDir.startsWith("/product/priv-app/") ||
-                            // vendor priv-app
-                            sourceDir.startsWith("/system/vendor/priv-app/") || sourceDir.startsWith("/vendor/priv-app/") ||
-                            // oem priv-app
-                            sourceDir.startsWith("/system/oem/priv-app/") || sourceDir.startsWith("/oem/priv-app/"));
-            return hasPrivilegedFlag && isInPrivilegedDir;
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            e.printStackTrace();
-            return false;
+    // 获取 APK 文件大小
+    public static long getApkSize(PackageInfo packageInfo) {
+        File apkFile = new File(packageInfo.applicationInfo.publicSourceDir);
+        if (apkFile.exists()) {
+            return apkFile.length();
         }
+        return 0;
     }
 
-    //是否是核心应用
-    private static boolean isCoreApp(PackageInfo packageInfo) {
-        boolean hasSystemFlag = (packageInfo.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0;
-        String sourceDir = packageInfo.applicationInfo.sourceDir;
-        // 扩展核心应用目录检查
-        boolean isInCoreDir = (sourceDir.startsWith("/system/app/") ||
-                // 某些设备可能在system分区的子目录下也有核心应用
-                sourceDir.startsWith("/system/system_app/"));
-        return hasSystemFlag && isInCoreDir;
+    private static void setAppTypeFlags(PackageInfo packageInfo, AppInfo appInfo) {
+        // 不允许重叠的分类逻辑：优先级 核心应用 > 特权应用 > 系统应用 > 用户应用
+        AppClassifier.Category category = AppClassifier.getDefault().classify(packageInfo.applicationInfo);
+        appInfo.setCoreApp(category == AppClassifier.Category.CORE);
+        appInfo.setPrivilegedApp(category == AppClassifier.Category.PRIVILEGED);
+        appInfo.setSystemApp(category == AppClassifier.Category.SYSTEM);
+        appInfo.setUserApp(category == AppClassifier.Category.USER);
     }
 
     public enum SortType {
@@ -221,49 +163,95 @@ public class AppUtils {
         SIZE_DESC,         // 大小降序
     }
 
+    // 比较两个行下标，避免为每次比较拆箱或经过 getter
+    private interface RowComparator {
+        int compare(int a, int b);
+    }
+
     public static void sortAppList(List<AppInfo> appList, SortType sortType) {
         if (appList == null || appList.isEmpty()) {
             return;
         }
 
-        // 创建新的排序后的列表
-        List<AppInfo> sortedList = new java.util.ArrayList<>(appList);
-
-        // 使用统一的Comparator实现
+        // 列表可能混有不同存储的行，先把排序键复制成基本类型的列，再对下标数组排序
+        AppInfo[] rows = appList.toArray(new AppInfo[0]);
+        int size = rows.length;
+        RowComparator comparator;
         switch (sortType) {
             case NAME_ASC:
-                sortedList.sort(Comparator.comparing(AppInfo::getAppName, String::compareToIgnoreCase));
+            case NAME_DESC: {
+                String[] names = new String[size];
+                for (int i = 0; i < size; i++) {
+                    names[i] = rows[i].getAppName();
+                }
+                comparator = sortType == SortType.NAME_ASC
+                        ? (a, b) -> names[a].compareToIgnoreCase(names[b])
+                        : (a, b) -> names[b].compareToIgnoreCase(names[a]);
                 break;
-            case NAME_DESC:
-                sortedList.sort(Comparator.comparing(AppInfo::getAppName, String::compareToIgnoreCase).reversed());
+            }
+            default: {
+                long[] keys = new long[size];
+                for (int i = 0; i < size; i++) {
+                    keys[i] = longKey(rows[i], sortType);
+                }
+                comparator = isAscending(sortType)
+                        ? (a, b) -> Long.compare(keys[a], keys[b])
+                        : (a, b) -> Long.compare(keys[b], keys[a]);
                 break;
+            }
+        }
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size, comparator);
+
+        // 更新原列表
+        appList.clear();
+        for (int row : order) {
+            appList.add(rows[row]);
+        }
+    }
+
+    private static long longKey(AppInfo appInfo, SortType sortType) {
+        switch (sortType) {
             case INSTALL_TIME_ASC:
-                sortedList.sort(Comparator.comparingLong(AppInfo::getFirstInstallTime));
-                break;
             case INSTALL_TIME_DESC:
-                sortedList.sort(Comparator.comparingLong(AppInfo::getFirstInstallTime).reversed());
-                break;
+                return appInfo.getFirstInstallTime();
             case UPDATE_TIME_ASC:
-                sortedList.sort(Comparator.comparingLong(AppInfo::getLastUpdateTime));
-                break;
             case UPDATE_TIME_DESC:
-                sortedList.sort(Comparator.comparingLong(AppInfo::getLastUpdateTime).reversed());
-                break;
-            case SIZE_ASC:
-                sortedList.sort(Comparator.comparingLong(AppInfo::getAppSize));
-                break;
-            case SIZE_DESC:
-                sortedList.sort(Comparator.comparingLong(AppInfo::getAppSize).reversed());
-                break;
+                return appInfo.getLastUpdateTime();
+            default:
+                return appInfo.getAppSize();
         }
+    }
 
-        // 更新原列表
-        appList.clear();
-        appList.addAll(sortedList);
+    private static boolean isAscending(SortType sortType) {
+        return sortType == SortType.INSTALL_TIME_ASC || sortType == SortType.UPDATE_TIME_ASC
+                || sortType == SortType.SIZE_ASC;
+    }
 
-        // 如果是ArrayList，优化内存使用
-        if (appList instanceof java.util.ArrayList) {
-            ((java.util.ArrayList<?>) appList).trimToSize();
+    // 稳定的归并排序，键相同的应用保持原有顺序
+    private static void mergeSort(int[] order, int[] buffer, int from, int to, RowComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid, comparator);
+        mergeSort(order, buffer, mid, to, comparator);
+        if (comparator.compare(order[mid - 1], order[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,381 @@
+package com.treelang.mean.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Commands run in the command console, kept across launches and ranked by frecency for
+ * autocomplete.
+ * <p>
+ * Every use appends a {@code USE} record with the command's new frecency to a journal in the
+ * files directory; replaying the journal keeps the last record per command, and the journal is
+ * rewritten once it is mostly redundant. In memory the commands are held in a sorted map, so the
+ * candidates for a prefix are one contiguous range, and in a set ordered by rank. A lookup scans
+ * the range while it is short; for a short prefix such as {@code p} the range can hold thousands
+ * of commands, and walking the ranked set until enough of them match is faster.
+ * <p>
+ * Journal I/O runs on a single writer thread owned by this class; the index lock only guards the
+ * in-memory structures, so a lookup never waits for a flush or a compaction. Until the journal has
+ * been read, lookups return nothing.
+ * <p>
+ * Frecency adds 1 per use and halves every {@link #HALF_LIFE_MS}. Ranking compares
+ * {@code log2(score) + lastUsed / HALF_LIFE_MS}, which orders entries the same way as their
+ * decayed scores at any moment, so a lookup needs no per-entry arithmetic beyond a comparison.
+ */
+public class CommandHistory {
+    private static final String TAG = "CommandHistory";
+    private static final String JOURNAL_FILE = "command_history";
+    private static final String JOURNAL_HEADER = "mean-history 1";
+    private static final String USE = "USE";
+    // 使用频率的半衰期
+    private static final long HALF_LIFE_MS = 7L * 24 * 60 * 60 * 1000;
+    // 保留的命令数上限，超出后淘汰排名最低的
+    private static final int MAX_ENTRIES = 50_000;
+    // 冗余记录超过该数量且多于有效条目时重写日志
+    private static final int COMPACT_THRESHOLD = 1000;
+    // 前缀范围内超过该数量的命令时改为按排名查找
+    private static final int RANGE_SCAN_LIMIT = 256;
+
+    private static class Entry {
+        final String command;
+        long lastUsed;
+        // lastUsed 时刻的频率值
+        double score;
+        // 与当前时间无关的排序值
+        double rank;
+
+        Entry(String command, long lastUsed, double score) {
+            this.command = command;
+            update(lastUsed, score);
+        }
+
+        void update(long lastUsed, double score) {
+            this.lastUsed = lastUsed;
+            this.score = score;
+            rank = Math.log(score) / Math.log(2) + (double) lastUsed / HALF_LIFE_MS;
+        }
+    }
+
+    // 排名从高到低，排名相同时按命令排序
+    private static final Comparator<Entry> BY_RANK = (a, b) -> {
+        int result = Double.compare(b.rank, a.rank);
+        return result != 0 ? result : a.command.compareTo(b.command);
+    };
+
+    private static volatile CommandHistory instance;
+
+    private final File journalFile;
+    // 日志的唯一写入者，读取、追加和重写都在这个线程中执行
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "command-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 以下两个索引只在写入线程中修改，修改和其他线程的读取由 this 保护
+    private final TreeMap<String, Entry> entries = new TreeMap<>();
+    private final TreeSet<Entry> ranked = new TreeSet<>(BY_RANK);
+    private volatile boolean loaded;
+    // 以下字段只在写入线程中访问
+    private Writer journal;
+    private int redundantRecords;
+    private boolean opened;
+
+    private CommandHistory(Context context) {
+        journalFile = new File(context.getFilesDir(), JOURNAL_FILE);
+    }
+
+    // 整个进程共用一个实例，日志只有一个写入者
+    public static CommandHistory getInstance(Context context) {
+        if (instance == null) {
+            synchronized (CommandHistory.class) {
+                if (instance == null) {
+                    instance = new CommandHistory(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    // 在写入线程中预先读取日志，可在任意线程中调用
+    public void load() {
+        ioExecutor.execute(this::ensureOpen);
+    }
+
+    /**
+     * Records one use of {@code command}. The journal is written on the history's own thread, so
+     * this can be called from any thread.
+     */
+    public void record(String command) {
+        long now = System.currentTimeMillis();
+        ioExecutor.execute(() -> {
+            ensureOpen();
+            String record;
+            synchronized (this) {
+                Entry entry = entries.get(command);
+                if (entry == null) {
+                    entry = put(command, now, 1);
+                } else {
+                    update(entry, now, decayed(entry, now) + 1);
+                    redundantRecords++;
+                }
+                record = recordOf(entry);
+                if (entries.size() > MAX_ENTRIES) {
+                    trimToSize();
+                }
+            }
+            appendRecord(record);
+            compactIfNeeded();
+        });
+    }
+
+    /**
+     * Returns up to {@code limit} commands starting with {@code prefix}, highest frecency first.
+     * The command equal to the prefix is left out, it has nothing left to complete. Returns
+     * nothing while the journal is still being read.
+     */
+    public synchronized List<String> suggest(String prefix, int limit) {
+        if (!loaded || prefix.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        // 前缀相同的命令在有序表中是连续的一段；只保留排名最高的 limit 条，按排名从高到低
+        Map<String, Entry> range = entries.subMap(prefix, false, prefix + Character.MAX_VALUE, false);
+        List<Entry> top = new ArrayList<>(limit + 1);
+        int scanned = 0;
+        for (Entry entry : range.values()) {
+            if (++scanned > RANGE_SCAN_LIMIT) {
+                return suggestByRank(prefix, limit);
+            }
+            if (top.size() == limit && BY_RANK.compare(entry, top.get(limit - 1)) >= 0) {
+                continue;
+            }
+            int index = top.size();
+            while (index > 0 && BY_RANK.compare(top.get(index - 1), entry) > 0) {
+                index--;
+            }
+            top.add(index, entry);
+            if (top.size() > limit) {
+                top.remove(limit);
+            }
+        }
+        return commandsOf(top);
+    }
+
+    // 前缀范围很大时，匹配的命令在排名中足够密集，从高到低找到 limit 条即可停止
+    private List<String> suggestByRank(String prefix, int limit) {
+        List<Entry> top = new ArrayList<>(limit);
+        for (Entry entry : ranked) {
+            if (entry.command.startsWith(prefix) && !entry.command.equals(prefix)) {
+                top.add(entry);
+                if (top.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return commandsOf(top);
+    }
+
+    private static List<String> commandsOf(List<Entry> top) {
+        List<String> commands = new ArrayList<>(top.size());
+        for (Entry entry : top) {
+            commands.add(entry.command);
+        }
+        return commands;
+    }
+
+    // 第一次使用时读取日志，在写入线程中调用；读取文件时不持有索引的锁
+    private void ensureOpen() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        boolean valid = false;
+        Map<String, Entry> replayed = new HashMap<>();
+        if (journalFile.exists()) {
+            try {
+                readJournal(replayed);
+                // 最后一条记录只写了一半时，新的记录会接在它后面，需要重写
+                valid = endsWithNewline();
+            } catch (IOException e) {
+                Log.w(TAG, "Discarding corrupted command history", e);
+                replayed.clear();
+            }
+        }
+        synchronized (this) {
+            for (Entry entry : replayed.values()) {
+                entries.put(entry.command, entry);
+                ranked.add(entry);
+            }
+            if (entries.size() > MAX_ENTRIES) {
+                trimToSize();
+            }
+        }
+        loaded = true;
+        try {
+            // 日志完好时直接追加，冗余记录较多时才重写
+            if (valid) {
+                journal = new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+                compactIfNeeded();
+            } else {
+                rewriteJournal();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to open command history", e);
+        }
+    }
+
+    // 重放日志，每条命令保留最后一条记录
+    private void readJournal(Map<String, Entry> replayed) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            if (!JOURNAL_HEADER.equals(reader.readLine())) {
+                throw new IOException("Unknown journal header");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ", 4);
+                if (parts.length < 4 || !USE.equals(parts[0])) {
+                    // 最后一行可能只写了一半
+                    continue;
+                }
+                try {
+                    String command = unescape(parts[3]);
+                    long lastUsed = Long.parseLong(parts[1]);
+                    double score = Double.parseDouble(parts[2]);
+                    if (replayed.put(command, new Entry(command, lastUsed, score)) != null) {
+                        redundantRecords++;
+                    }
+                } catch (NumberFormatException e) {
+                    // 只写了一半的记录
+                }
+            }
+        }
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "r")) {
+            long length = file.length();
+            if (length == 0) {
+                return false;
+            }
+            file.seek(length - 1);
+            return file.read() == '\n';
+        }
+    }
+
+    // 按当前索引重写日志，每条命令只保留一条记录；索引只由写入线程修改，这里读取时不需要加锁
+    private void rewriteJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        File tempFile = new File(journalFile.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            writer.write(JOURNAL_HEADER);
+            writer.write('\n');
+            for (Entry entry : entries.values()) {
+                writer.write(recordOf(entry));
+            }
+        }
+        if (!tempFile.renameTo(journalFile)) {
+            throw new IOException("Failed to replace command history");
+        }
+        journal = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+        redundantRecords = 0;
+    }
+
+    private void compactIfNeeded() {
+        if (redundantRecords >= COMPACT_THRESHOLD && redundantRecords >= entries.size()) {
+            try {
+                rewriteJournal();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to compact command history", e);
+            }
+        }
+    }
+
+    // 淘汰排名最低的命令，被淘汰的记录在下次重写日志时去掉
+    private void trimToSize() {
+        while (entries.size() > MAX_ENTRIES) {
+            entries.remove(ranked.pollLast().command);
+            redundantRecords++;
+        }
+    }
+
+    private Entry put(String command, long lastUsed, double score) {
+        Entry entry = new Entry(command, lastUsed, score);
+        entries.put(command, entry);
+        ranked.add(entry);
+        return entry;
+    }
+
+    // 排名变化时需要先从有序集合中移除
+    private void update(Entry entry, long lastUsed, double score) {
+        ranked.remove(entry);
+        entry.update(lastUsed, score);
+        ranked.add(entry);
+    }
+
+    private void appendRecord(String record) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.write(record);
+            journal.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to append to command history", e);
+        }
+    }
+
+    private static double decayed(Entry entry, long now) {
+        return entry.score * Math.pow(0.5, (double) Math.max(0, now - entry.lastUsed) / HALF_LIFE_MS);
+    }
+
+    private static String recordOf(Entry entry) {
+        return USE + " " + entry.lastUsed + " " + entry.score + " " + escape(entry.command) + "\n";
+    }
+
+    // 命令可能有多行，换行和反斜杠转义后每条记录占一行
+    private static String escape(String command) {
+        return command.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                builder.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
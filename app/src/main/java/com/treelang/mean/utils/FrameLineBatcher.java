@@ -0,0 +1,166 @@
+package com.treelang.mean.utils;
+
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects output lines from any thread and hands them to the UI once per frame, on
+ * {@link Choreographer} callbacks, instead of per line.
+ * <p>
+ * Each frame takes at most a character budget from the pending lines, so a flood of output is
+ * spread over several frames rather than stalling one. The budget adapts: it halves when a flush
+ * overran its share of the frame and doubles while a backlog remains. Lines never wait longer than
+ * {@link #MAX_LATENCY_MS}; once the oldest pending line is that old, the frame takes the largest
+ * budget instead, so a continuous flood cannot hold the lock or the main thread for an unbounded
+ * drain.
+ * Pending lines beyond {@code maxPendingLines} are dropped from the oldest end, since a console
+ * of that size would evict them anyway.
+ */
+public class FrameLineBatcher implements Choreographer.FrameCallback {
+    // 积压的行最长等待时间
+    private static final long MAX_LATENCY_MS = 250;
+    // 每帧交付的字符数预算的初始值和上下限
+    private static final int INITIAL_BUDGET_CHARS = 64 * 1024;
+    private static final int MIN_BUDGET_CHARS = 8 * 1024;
+    private static final int MAX_BUDGET_CHARS = 1024 * 1024;
+    // 每帧用于交付输出的目标时间，超过时减小预算
+    private static final long FRAME_WORK_NS = 4_000_000;
+
+    public interface Sink {
+        // 在主线程中回调；列表会被复用，只在回调期间有效
+        void onLines(List<String> lines);
+    }
+
+    private final Choreographer choreographer;
+    private final Sink sink;
+    private final int maxPendingLines;
+    private final Object lock = new Object();
+    // 以下两个字段由 lock 保护
+    private final ArrayDeque<PendingLine> pending = new ArrayDeque<>();
+    private boolean scheduled;
+    // 以下字段只在主线程中使用
+    private final ArrayList<String> batch = new ArrayList<>();
+    private int budgetChars = INITIAL_BUDGET_CHARS;
+
+    // 每行记录加入的时间，按最早一行判断是否等待过久
+    private static final class PendingLine {
+        final String line;
+        final long enqueuedAt;
+
+        PendingLine(String line, long enqueuedAt) {
+            this.line = line;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    // 需要在主线程中创建
+    public FrameLineBatcher(int maxPendingLines, Sink sink) {
+        this.choreographer = Choreographer.getInstance();
+        this.maxPendingLines = maxPendingLines;
+        this.sink = sink;
+    }
+
+    // 可在任意线程中调用
+    public void add(String line) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            enqueueLocked(line, now);
+            scheduleLocked();
+        }
+    }
+
+    public void addAll(List<String> lines) {
+        long now = System.nanoTime();
+        synchronized (lock) {
+            for (String line : lines) {
+                enqueueLocked(line, now);
+            }
+            scheduleLocked();
+        }
+    }
+
+    /**
+     * Delivers everything pending right away, for example before a final status line. Must be
+     * called on the main thread.
+     */
+    public void flush() {
+        choreographer.removeFrameCallback(this);
+        synchronized (lock) {
+            for (PendingLine pendingLine : pending) {
+                batch.add(pendingLine.line);
+            }
+            pending.clear();
+            scheduled = false;
+        }
+        deliver();
+    }
+
+    // 丢弃未交付的行，在界面销毁时调用
+    public void cancel() {
+        choreographer.removeFrameCallback(this);
+        synchronized (lock) {
+            pending.clear();
+            scheduled = false;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        long start = System.nanoTime();
+        boolean backlog;
+        synchronized (lock) {
+            // 最早一行等待过久时使用最大预算，持续输出时也不会一次交付全部积压
+            PendingLine head = pending.peekFirst();
+            boolean overdue = head != null && start - head.enqueuedAt >= MAX_LATENCY_MS * 1_000_000L;
+            int limit = overdue ? MAX_BUDGET_CHARS : budgetChars;
+            int chars = 0;
+            PendingLine pendingLine;
+            while (chars < limit && (pendingLine = pending.pollFirst()) != null) {
+                batch.add(pendingLine.line);
+                chars += pendingLine.line.length() + 1;
+            }
+            backlog = !pending.isEmpty();
+            scheduled = backlog;
+        }
+        deliver();
+
+        long elapsed = System.nanoTime() - start;
+        if (elapsed > FRAME_WORK_NS) {
+            budgetChars = Math.max(MIN_BUDGET_CHARS, budgetChars / 2);
+        } else if (backlog) {
+            budgetChars = Math.min(MAX_BUDGET_CHARS, budgetChars * 2);
+        }
+        if (backlog) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    private void deliver() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            sink.onLines(batch);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void enqueueLocked(String line, long now) {
+        if (pending.size() >= maxPendingLines) {
+            pending.pollFirst();
+        }
+        pending.addLast(new PendingLine(line, now));
+    }
+
+    // Choreographer 的回调可以从任意线程注册
+    private void scheduleLocked() {
+        if (!scheduled && !pending.isEmpty()) {
+            scheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+}
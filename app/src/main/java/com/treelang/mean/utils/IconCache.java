@@ -0,0 +1,207 @@
+package com.treelang.mean.utils;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.ComponentInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of app icons, rasterized once to bitmaps of the list icon size.
+ * <p>
+ * The cache is bounded in bytes, to a fraction of the app's memory class, and shrinks when the
+ * system reports memory pressure through {@link ComponentCallbacks2#onTrimMemory}. App rows
+ * only keep their package name, so icons evicted from here can actually be collected.
+ * <p>
+ * Misses fall through to {@link IconDiskCache} before the icon is loaded from the APK, so a cold
+ * start reads small pre-scaled files instead of each package's resources.
+ */
+public class IconCache implements ComponentCallbacks2 {
+    // 占用内存类别的八分之一
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+    // 与列表中的图标大小一致
+    private static final int ICON_SIZE_DP = 40;
+
+    private static volatile IconCache instance;
+
+    private final Context context;
+    private final LruCache<String, Bitmap> cache;
+    private final IconDiskCache diskCache;
+    private volatile int iconSizePx;
+    private int densityDpi;
+
+    private IconCache(Context context) {
+        this.context = context;
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+        cache = new LruCache<>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+        diskCache = new IconDiskCache(context);
+        updateIconSize(context.getResources().getConfiguration());
+    }
+
+    public static IconCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (IconCache.class) {
+                if (instance == null) {
+                    Context appContext = context.getApplicationContext();
+                    instance = new IconCache(appContext);
+                    appContext.registerComponentCallbacks(instance);
+                }
+            }
+        }
+        return instance;
+    }
+
+    // 按包名或 componentKey 返回的键取缓存中的图标
+    public Bitmap get(String key) {
+        return key != null ? cache.get(key) : null;
+    }
+
+    /**
+     * Returns the cache key of a component's icon. Components without an icon of their own share
+     * the entry of their app icon, so hundreds of activities of one app cost a single bitmap.
+     */
+    public static String componentKey(ComponentInfo componentInfo) {
+        int iconResource = componentInfo.getIconResource();
+        if (iconResource == 0 || iconResource == componentInfo.applicationInfo.icon) {
+            return componentInfo.packageName;
+        }
+        return componentInfo.packageName + "/" + Integer.toHexString(iconResource);
+    }
+
+    /**
+     * Returns the cached icon of a component, loading it on a miss. Icons shared with the app go
+     * through {@link #load(PackageManager, String)}; component specific ones are kept in memory only.
+     */
+    public Bitmap load(PackageManager pm, ComponentInfo componentInfo) {
+        String key = componentKey(componentInfo);
+        if (key.equals(componentInfo.packageName)) {
+            return load(pm, componentInfo.packageName);
+        }
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = rasterize(componentInfo.loadIcon(pm), iconSizePx);
+            cache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns the cached icon. On a miss it is read from the disk cache, or loaded from the APK,
+     * rasterized and written to the disk cache. May be slow, so call it off the main thread unless
+     * a single icon is needed.
+     */
+    public Bitmap load(PackageManager pm, PackageInfo packageInfo) {
+        Bitmap bitmap = cache.get(packageInfo.packageName);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        int size = iconSizePx;
+        bitmap = diskCache.get(packageInfo, size);
+        if (bitmap == null) {
+            bitmap = rasterize(packageInfo.applicationInfo.loadIcon(pm), size);
+            diskCache.put(packageInfo, size, bitmap);
+        }
+        cache.put(packageInfo.packageName, bitmap);
+        return bitmap;
+    }
+
+    // 按包名加载，包不存在时返回 null
+    public Bitmap load(PackageManager pm, String packageName) {
+        Bitmap bitmap = cache.get(packageName);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        try {
+            // 磁盘缓存按版本号和更新时间区分，需要 PackageInfo
+            return load(pm, pm.getPackageInfo(packageName, PackageManager.MATCH_UNINSTALLED_PACKAGES));
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    // 只取内存缓存中的图标，未命中时返回 null，可在主线程中调用
+    public Drawable getDrawable(String key) {
+        Bitmap bitmap = get(key);
+        return bitmap != null ? new BitmapDrawable(context.getResources(), bitmap) : null;
+    }
+
+    /**
+     * Drops the in-memory icons of a package, including its component specific ones, after the
+     * package was updated or removed. The disk cache needs no invalidation, its entries are keyed
+     * by version code and update time.
+     */
+    public void remove(String packageName) {
+        cache.remove(packageName);
+        String componentPrefix = packageName + "/";
+        for (String key : cache.snapshot().keySet()) {
+            if (key.startsWith(componentPrefix)) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Whether the cache has reached its byte budget. Prefetching should stop here, since every
+     * further icon would only evict another one.
+     */
+    public boolean isFull() {
+        return cache.size() >= cache.maxSize();
+    }
+
+    /**
+     * Draws {@code drawable} into a new square bitmap of {@code size} pixels. Used for list icons
+     * and for one-off icons of other sizes, such as pinned shortcuts.
+     */
+    public static Bitmap rasterize(Drawable drawable, int size) {
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, size, size);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    private void updateIconSize(Configuration configuration) {
+        densityDpi = configuration.densityDpi;
+        iconSizePx = Math.round(ICON_SIZE_DP * densityDpi / 160f);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            // 进程即将被回收，全部释放
+            cache.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND) {
+            cache.trimToSize(cache.maxSize() / 4);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // 界面隐藏或前台内存紧张时保留一半，回到前台时可见的图标多半还在
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // 屏幕密度变化后已缓存的位图尺寸不再合适；磁盘缓存按尺寸区分，旧尺寸的文件会被逐步替换
+        if (newConfig.densityDpi != densityDpi) {
+            updateIconSize(newConfig);
+            cache.evictAll();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        cache.evictAll();
+    }
+}
@@ -0,0 +1,347 @@
+package com.treelang.mean.utils;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Disk tier of {@link IconCache}: pre-scaled icon bitmaps stored as PNG files in the cache
+ * directory.
+ * <p>
+ * Files are keyed by package name, {@code versionCode}, {@code lastUpdateTime} and pixel size, so
+ * an updated package or a density change simply misses and the stale file is replaced. The
+ * directory is bounded by total file size with LRU eviction. The index is kept in an append-only
+ * journal ({@code PUT}, {@code DEL} and {@code READ} records) that is replayed when the cache is
+ * first used and compacted once it is mostly redundant.
+ */
+public class IconDiskCache {
+    private static final String TAG = "IconDiskCache";
+    private static final String DIR_NAME = "icons";
+    private static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_HEADER = "mean-icons 1";
+    private static final String FILE_SUFFIX = ".png";
+    private static final long MAX_BYTES = 8L * 1024 * 1024;
+    // 冗余记录超过该数量且多于有效条目时重写日志
+    private static final int COMPACT_THRESHOLD = 1000;
+
+    private static final String PUT = "PUT";
+    private static final String DEL = "DEL";
+    private static final String READ = "READ";
+
+    private final File directory;
+    private final File journalFile;
+
+    // 按访问顺序排列，最久未用的在前；值为文件字节数
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // 每个包只保留一个版本的图标
+    private final Map<String, String> keyByPackage = new HashMap<>();
+    private Writer journal;
+    private long totalBytes;
+    private int redundantRecords;
+    private boolean opened;
+
+    public IconDiskCache(Context context) {
+        directory = new File(context.getCacheDir(), DIR_NAME);
+        journalFile = new File(directory, JOURNAL_FILE);
+    }
+
+    /**
+     * Returns the icon stored for this package version at {@code sizePx}, or null on a miss.
+     */
+    public Bitmap get(PackageInfo packageInfo, int sizePx) {
+        String key = keyOf(packageInfo, sizePx);
+        synchronized (this) {
+            if (!ensureOpen() || entries.get(key) == null) {
+                return null;
+            }
+            appendRecord(READ, key, false);
+        }
+        // 解码放在锁外；文件若恰好被淘汰，解码失败按未命中处理
+        Bitmap bitmap = BitmapFactory.decodeFile(fileOf(key).getPath());
+        if (bitmap == null) {
+            synchronized (this) {
+                remove(key);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Stores the icon for this package version, replacing any other version of the same package.
+     */
+    public void put(PackageInfo packageInfo, int sizePx, Bitmap bitmap) {
+        String key = keyOf(packageInfo, sizePx);
+        synchronized (this) {
+            if (!ensureOpen() || entries.containsKey(key)) {
+                return;
+            }
+        }
+        // 先写临时文件再重命名，日志中的 PUT 记录总是指向完整的文件
+        // 同一个图标可能被两个线程同时写入，每次写入使用不同的临时文件
+        File tempFile = new File(directory, key + "." + UUID.randomUUID() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                throw new IOException("Failed to encode icon");
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write icon of " + packageInfo.packageName, e);
+            deleteFile(tempFile);
+            return;
+        }
+        synchronized (this) {
+            // 另一个线程已经写入了同一个图标
+            if (entries.containsKey(key) || !tempFile.renameTo(fileOf(key))) {
+                deleteFile(tempFile);
+                return;
+            }
+            String previous = keyByPackage.get(packageInfo.packageName);
+            if (previous != null && !previous.equals(key)) {
+                remove(previous);
+            }
+            add(key, fileOf(key).length());
+            appendRecord(PUT, key + " " + entries.get(key), true);
+            trimToSize();
+            compactIfNeeded();
+        }
+    }
+
+    // 第一次使用时在工作线程中读取日志，避免在主线程访问磁盘
+    private boolean ensureOpen() {
+        if (opened) {
+            return journal != null;
+        }
+        opened = true;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Failed to create icon cache directory");
+            return false;
+        }
+        if (journalFile.exists()) {
+            try {
+                readJournal();
+            } catch (IOException e) {
+                Log.w(TAG, "Discarding corrupted icon journal", e);
+                entries.clear();
+                keyByPackage.clear();
+                totalBytes = 0;
+            }
+        }
+        deleteUntrackedFiles();
+        try {
+            rewriteJournal();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to open icon journal", e);
+            return false;
+        }
+        trimToSize();
+        return true;
+    }
+
+    private void readJournal() throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            if (!JOURNAL_HEADER.equals(reader.readLine())) {
+                throw new IOException("Unknown journal header");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length < 2) {
+                    // 最后一行可能只写了一半
+                    continue;
+                }
+                String key = parts[1];
+                switch (parts[0]) {
+                    case PUT:
+                        if (parts.length == 3) {
+                            String previous = keyByPackage.get(packageOf(key));
+                            if (previous != null && !previous.equals(key)) {
+                                drop(previous);
+                            }
+                            add(key, Long.parseLong(parts[2]));
+                        }
+                        break;
+                    case DEL:
+                        drop(key);
+                        break;
+                    case READ:
+                        entries.get(key);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException(e);
+        }
+        // 日志中有记录但文件已不存在的条目直接丢弃
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (!fileOf(entry.getKey()).isFile()) {
+                totalBytes -= entry.getValue();
+                keyByPackage.remove(packageOf(entry.getKey()));
+                iterator.remove();
+            }
+        }
+    }
+
+    // 删除日志中没有记录的文件，例如写入过程中被杀进程留下的临时文件
+    private void deleteUntrackedFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.equals(JOURNAL_FILE)) {
+                continue;
+            }
+            if (!name.endsWith(FILE_SUFFIX)
+                    || !entries.containsKey(name.substring(0, name.length() - FILE_SUFFIX.length()))) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    // 按当前索引重写日志，只保留每个条目的一条 PUT 记录
+    private void rewriteJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        File tempFile = new File(directory, JOURNAL_FILE + ".tmp");
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            writer.write(JOURNAL_HEADER);
+            writer.write('\n');
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                writer.write(PUT + " " + entry.getKey() + " " + entry.getValue() + "\n");
+            }
+        }
+        if (!tempFile.renameTo(journalFile)) {
+            throw new IOException("Failed to replace icon journal");
+        }
+        journal = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(journalFile, true), StandardCharsets.UTF_8));
+        redundantRecords = 0;
+    }
+
+    private void compactIfNeeded() {
+        if (redundantRecords >= COMPACT_THRESHOLD && redundantRecords >= entries.size()) {
+            try {
+                rewriteJournal();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to compact icon journal", e);
+            }
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > MAX_BYTES && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            String key = eldest.getKey();
+            totalBytes -= eldest.getValue();
+            keyByPackage.remove(packageOf(key));
+            iterator.remove();
+            deleteFile(fileOf(key));
+            appendRecord(DEL, key, false);
+        }
+        flushJournal();
+    }
+
+    private void add(String key, long bytes) {
+        Long previous = entries.put(key, bytes);
+        if (previous != null) {
+            totalBytes -= previous;
+        }
+        totalBytes += bytes;
+        keyByPackage.put(packageOf(key), key);
+    }
+
+    // 只修改内存中的索引
+    private void drop(String key) {
+        Long bytes = entries.remove(key);
+        if (bytes != null) {
+            totalBytes -= bytes;
+            if (key.equals(keyByPackage.get(packageOf(key)))) {
+                keyByPackage.remove(packageOf(key));
+            }
+        }
+    }
+
+    private void remove(String key) {
+        if (!entries.containsKey(key)) {
+            return;
+        }
+        drop(key);
+        deleteFile(fileOf(key));
+        appendRecord(DEL, key, true);
+    }
+
+    // READ 记录不立即刷新，丢失时只影响淘汰顺序
+    private void appendRecord(String op, String value, boolean flush) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.write(op + " " + value + "\n");
+            if (flush) {
+                journal.flush();
+            }
+            redundantRecords++;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to append to icon journal", e);
+        }
+    }
+
+    private void flushJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to flush icon journal", e);
+        }
+    }
+
+    private File fileOf(String key) {
+        return new File(directory, key + FILE_SUFFIX);
+    }
+
+    // 包名中不会出现 '-'，可以直接用作分隔符
+    private static String keyOf(PackageInfo packageInfo, int sizePx) {
+        return packageInfo.packageName + "-" + packageInfo.getLongVersionCode()
+                + "-" + packageInfo.lastUpdateTime + "-" + sizePx;
+    }
+
+    private static String packageOf(String key) {
+        int end = key.indexOf('-');
+        return end >= 0 ? key.substring(0, end) : key;
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete " + file.getName());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.treelang.mean.utils;
+
+import android.content.Context;
+import android.content.pm.ComponentInfo;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads app and component icons into {@link IconCache} on a small decode pool.
+ * <p>
+ * Requests are ordered by priority first (visible rows before rows near the viewport) and by
+ * recency second, so the rows the user is looking at right now are decoded first while
+ * flinging. Concurrent requests for the same package share one decode, and a request is dropped
+ * from the queue once every caller has cancelled it. Callbacks run on the main thread.
+ */
+public class IconLoader {
+    private static final String TAG = "IconLoader";
+
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_NEAR_VISIBLE = 1;
+
+    private static final int POOL_SIZE = 2;
+
+    private static volatile IconLoader instance;
+
+    public interface Callback {
+        // 图标已放入 IconCache，在主线程中回调；key 为包名或 IconCache.componentKey
+        void onIconLoaded(String key);
+    }
+
+    private final IconCache iconCache;
+    private final PackageManager pm;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ThreadPoolExecutor decodePool;
+
+    // 排队中或正在解码的请求，按缓存键去重
+    private final Map<String, Request> pending = new HashMap<>();
+
+    private IconLoader(Context context) {
+        iconCache = IconCache.getInstance(context);
+        pm = context.getPackageManager();
+        // 任务按优先级出队，只能用 execute 提交，submit 包装后的任务无法比较
+        decodePool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "icon-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        decodePool.allowCoreThreadTimeOut(true);
+    }
+
+    public static IconLoader getInstance(Context context) {
+        if (instance == null) {
+            synchronized (IconLoader.class) {
+                if (instance == null) {
+                    instance = new IconLoader(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Requests the icon of {@code packageName}. If the package is already queued the callback is
+     * attached to that request, and the request is moved up if the new priority is higher.
+     */
+    public void load(String packageName, int priority, Callback callback) {
+        enqueue(packageName, null, priority, callback);
+    }
+
+    /**
+     * Requests the icon of an activity or other component. The callback receives
+     * {@link IconCache#componentKey}, which is also the key to cancel with.
+     */
+    public void load(ComponentInfo componentInfo, int priority, Callback callback) {
+        enqueue(IconCache.componentKey(componentInfo), componentInfo, priority, callback);
+    }
+
+    private synchronized void enqueue(String key, ComponentInfo componentInfo, int priority, Callback callback) {
+        Request request = pending.get(key);
+        if (request == null) {
+            request = new Request(key, componentInfo, priority);
+            request.callbacks.add(callback);
+            pending.put(key, request);
+            decodePool.execute(request);
+            return;
+        }
+        request.callbacks.add(callback);
+        if (!request.started && priority < request.priority && decodePool.remove(request)) {
+            // 修改优先级前先出队，避免破坏队列的堆结构
+            request.priority = priority;
+            request.sequence = sequence.incrementAndGet();
+            decodePool.execute(request);
+        }
+    }
+
+    /**
+     * Withdraws {@code callback} from the request for {@code key}. The request is dropped if nobody
+     * else is waiting for it and it has not started yet.
+     */
+    public synchronized void cancel(String key, Callback callback) {
+        Request request = pending.get(key);
+        if (request == null) {
+            return;
+        }
+        request.callbacks.remove(callback);
+        if (request.callbacks.isEmpty() && !request.started) {
+            decodePool.remove(request);
+            pending.remove(key);
+        }
+    }
+
+    private final class Request implements Runnable, Comparable<Request> {
+        final String key;
+        // 为 null 时按包名加载应用图标
+        final ComponentInfo componentInfo;
+        final Set<Callback> callbacks = new LinkedHashSet<>();
+        int priority;
+        long sequence;
+        boolean started;
+
+        Request(String key, ComponentInfo componentInfo, int priority) {
+            this.key = key;
+            this.componentInfo = componentInfo;
+            this.priority = priority;
+            this.sequence = IconLoader.this.sequence.incrementAndGet();
+        }
+
+        @Override
+        public void run() {
+            synchronized (IconLoader.this) {
+                if (pending.get(key) != this) {
+                    return;
+                }
+                started = true;
+            }
+            List<Callback> toNotify;
+            try {
+                if (componentInfo != null) {
+                    iconCache.load(pm, componentInfo);
+                } else {
+                    iconCache.load(pm, key);
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to load icon for " + key, e);
+            } finally {
+                // 加载失败也要移除请求，否则同一个图标以后不会再加载
+                synchronized (IconLoader.this) {
+                    pending.remove(key);
+                    toNotify = new ArrayList<>(callbacks);
+                }
+            }
+            mainHandler.post(() -> {
+                for (Callback callback : toNotify) {
+                    callback.onIconLoaded(key);
+                }
+            });
+        }
+
+        // 优先级高的在前，同一优先级中后请求的在前，快速滑动时先加载当前屏幕上的图标
+        @Override
+        public int compareTo(Request other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(other.sequence, sequence);
+        }
+    }
+}
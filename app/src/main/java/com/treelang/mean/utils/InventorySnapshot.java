@@ -0,0 +1,327 @@
+package com.treelang.mean.utils;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.util.Log;
+
+import com.treelang.mean.data.AppInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Compact binary snapshot of the app inventory kept in the cache directory.
+ * <p>
+ * Entries are keyed by package name and are only reused while the package's
+ * {@code lastUpdateTime} and {@code versionCode} still match, so unchanged packages can skip
+ * resolving their label, installer and size on every load.
+ */
+public class InventorySnapshot {
+    private static final String TAG = "InventorySnapshot";
+    private static final String FILE_NAME = "inventory.snapshot";
+    private static final int MAGIC = 0x4d45414e; // "MEAN"
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int FLAG_SYSTEM_APP = 1;
+    private static final int FLAG_PRIVILEGED_APP = 1 << 1;
+    private static final int FLAG_CORE_APP = 1 << 2;
+    private static final int FLAG_HAS_SYSTEM_FLAG = 1 << 3;
+
+    private final File file;
+    private volatile Map<String, Entry> entries = Collections.emptyMap();
+    private boolean dirty = false;
+
+    /**
+     * One persisted app. Besides the displayed fields it keeps the raw values the entry is keyed on.
+     */
+    public static class Entry {
+        final String packageName;
+        final long keyLastUpdateTime;
+        final long keyVersionCode;
+        final int flags;
+        final String appName;
+        final String versionName;
+        final int versionCode;
+        final long firstInstallTime;
+        final long lastUpdateTime;
+        final String installerPackageName;
+        final long appSize;
+        final String apkPath;
+        final int uid;
+        final int targetSdkVersion;
+        final int minSdkVersion;
+        final int compileSdkVersion;
+        // 合并 shell 查询结果后的状态，冷启动时先显示它，避免已禁用、已卸载的应用短暂显示为已安装
+        final String status;
+
+        Entry(PackageInfo packageInfo, AppInfo appInfo) {
+            packageName = packageInfo.packageName;
+            keyLastUpdateTime = packageInfo.lastUpdateTime;
+            keyVersionCode = packageInfo.getLongVersionCode();
+            int typeFlags = 0;
+            if (appInfo.isSystemApp()) typeFlags |= FLAG_SYSTEM_APP;
+            if (appInfo.isPrivilegedApp()) typeFlags |= FLAG_PRIVILEGED_APP;
+            if (appInfo.isCoreApp()) typeFlags |= FLAG_CORE_APP;
+            if ((packageInfo.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0) typeFlags |= FLAG_HAS_SYSTEM_FLAG;
+            flags = typeFlags;
+            appName = appInfo.getAppName();
+            versionName = appInfo.getVersionName();
+            versionCode = appInfo.getVersionCode();
+            firstInstallTime = appInfo.getFirstInstallTime();
+            lastUpdateTime = appInfo.getLastUpdateTime();
+            installerPackageName = appInfo.getInstallerPackageName();
+            appSize = appInfo.getAppSize();
+            apkPath = appInfo.getApkPath();
+            uid = appInfo.getUid();
+            targetSdkVersion = appInfo.getTargetSdkVersion();
+            minSdkVersion = appInfo.getMinSdkVersion();
+            compileSdkVersion = appInfo.getCompileSdkVersion();
+            status = appInfo.getStatus();
+        }
+
+        Entry(DataInputStream in) throws IOException {
+            packageName = in.readUTF();
+            keyLastUpdateTime = in.readLong();
+            keyVersionCode = in.readLong();
+            flags = in.readByte();
+            appName = in.readUTF();
+            versionName = readNullableString(in);
+            versionCode = in.readInt();
+            firstInstallTime = in.readLong();
+            lastUpdateTime = in.readLong();
+            installerPackageName = readNullableString(in);
+            appSize = in.readLong();
+            apkPath = readNullableString(in);
+            uid = in.readInt();
+            targetSdkVersion = in.readInt();
+            minSdkVersion = in.readInt();
+            compileSdkVersion = in.readInt();
+            status = readNullableString(in);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(packageName);
+            out.writeLong(keyLastUpdateTime);
+            out.writeLong(keyVersionCode);
+            out.writeByte(flags);
+            out.writeUTF(appName != null ? appName : packageName);
+            writeNullableString(out, versionName);
+            out.writeInt(versionCode);
+            out.writeLong(firstInstallTime);
+            out.writeLong(lastUpdateTime);
+            writeNullableString(out, installerPackageName);
+            out.writeLong(appSize);
+            writeNullableString(out, apkPath);
+            out.writeInt(uid);
+            out.writeInt(targetSdkVersion);
+            out.writeInt(minSdkVersion);
+            out.writeInt(compileSdkVersion);
+            writeNullableString(out, status);
+        }
+
+        boolean matches(PackageInfo packageInfo) {
+            return keyLastUpdateTime == packageInfo.lastUpdateTime
+                    && keyVersionCode == packageInfo.getLongVersionCode();
+        }
+
+        // 系统标志位（FLAG_SYSTEM）未设置的应用显示在用户应用列表中
+        public boolean isUserApp() {
+            return (flags & FLAG_HAS_SYSTEM_FLAG) == 0;
+        }
+
+        public AppInfo toAppInfo(AppInfo appInfo) {
+            appInfo.setAppName(appName);
+            appInfo.setPackageName(packageName);
+            appInfo.setVersionName(versionName);
+            appInfo.setVersionCode(versionCode);
+            appInfo.setFirstInstallTime(firstInstallTime);
+            appInfo.setLastUpdateTime(lastUpdateTime);
+            appInfo.setInstallerPackageName(installerPackageName);
+            appInfo.setSystemApp((flags & FLAG_SYSTEM_APP) != 0);
+            appInfo.setPrivilegedApp((flags & FLAG_PRIVILEGED_APP) != 0);
+            appInfo.setCoreApp((flags & FLAG_CORE_APP) != 0);
+            appInfo.setAppSize(appSize);
+            appInfo.setApkPath(apkPath);
+            appInfo.setUid(uid);
+            appInfo.setTargetSdkVersion(targetSdkVersion);
+            appInfo.setMinSdkVersion(minSdkVersion);
+            appInfo.setCompileSdkVersion(compileSdkVersion);
+            appInfo.setStatus(status);
+            return appInfo;
+        }
+    }
+
+    public InventorySnapshot(Context context) {
+        file = new File(context.getCacheDir(), FILE_NAME);
+    }
+
+    /**
+     * Reads the snapshot from disk. A missing, outdated or corrupted file results in an empty snapshot.
+     */
+    public synchronized void read() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                Log.w(TAG, "Discarding snapshot with unknown format");
+                return;
+            }
+            // 名称是按语言加载的，语言变化后整个快照作废
+            if (!Locale.getDefault().toLanguageTag().equals(in.readUTF())) {
+                return;
+            }
+            int count = in.readInt();
+            Map<String, Entry> restored = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in);
+                restored.put(entry.packageName, entry);
+            }
+            entries = restored;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read snapshot, ignoring it", e);
+            if (!file.delete()) {
+                Log.w(TAG, "Failed to delete corrupted snapshot");
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns all entries in the package order of the load they were taken from.
+     */
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Restores the app into {@code appInfo} if the snapshot holds an entry for the same package version.
+     * Returns false, leaving {@code appInfo} untouched, otherwise. Safe to call from several loader threads at once.
+     */
+    public boolean restore(PackageInfo packageInfo, AppInfo appInfo) {
+        Entry entry = entries.get(packageInfo.packageName);
+        if (entry == null || !entry.matches(packageInfo)) {
+            return false;
+        }
+        entry.toAppInfo(appInfo);
+        return true;
+    }
+
+    /**
+     * Replaces the snapshot content with the given packages and their fully loaded apps.
+     * Apps are matched to packages by position; null apps are skipped.
+     */
+    public synchronized void update(List<PackageInfo> packages, List<AppInfo> apps) {
+        Map<String, Entry> updated = new LinkedHashMap<>(packages.size() * 2);
+        for (int i = 0; i < packages.size(); i++) {
+            AppInfo appInfo = apps.get(i);
+            if (appInfo != null) {
+                PackageInfo packageInfo = packages.get(i);
+                updated.put(packageInfo.packageName, new Entry(packageInfo, appInfo));
+            }
+        }
+        if (!dirty && updated.size() == entries.size()) {
+            // 包集合、版本和状态都没变时不需要重写文件
+            boolean changed = false;
+            for (Entry entry : updated.values()) {
+                Entry previous = entries.get(entry.packageName);
+                changed = previous == null || previous.keyLastUpdateTime != entry.keyLastUpdateTime
+                        || previous.keyVersionCode != entry.keyVersionCode
+                        || !Objects.equals(previous.status, entry.status);
+                if (changed) {
+                    break;
+                }
+            }
+            dirty = changed;
+        } else {
+            dirty = true;
+        }
+        entries = updated;
+    }
+
+    /**
+     * Replaces only the entries of {@code changedPackages} with the given packages and their fully
+     * loaded apps, matched by position. Changed packages missing from {@code packages} are removed.
+     * Replaced entries keep their position, new ones are appended.
+     */
+    public synchronized void update(Set<String> changedPackages, List<PackageInfo> packages, List<AppInfo> apps) {
+        Map<String, Entry> replacements = new LinkedHashMap<>(packages.size() * 2);
+        for (int i = 0; i < packages.size(); i++) {
+            PackageInfo packageInfo = packages.get(i);
+            replacements.put(packageInfo.packageName, new Entry(packageInfo, apps.get(i)));
+        }
+        Map<String, Entry> merged = new LinkedHashMap<>((entries.size() + replacements.size()) * 2);
+        for (Entry entry : entries.values()) {
+            if (!changedPackages.contains(entry.packageName)) {
+                merged.put(entry.packageName, entry);
+                continue;
+            }
+            // 仍存在的包在原位置替换，已卸载的包不再放回
+            Entry replacement = replacements.remove(entry.packageName);
+            if (replacement != null) {
+                merged.put(entry.packageName, replacement);
+            }
+        }
+        merged.putAll(replacements);
+        dirty = true;
+        entries = merged;
+    }
+
+    /**
+     * Writes the snapshot to disk if it changed since it was last read or written.
+     */
+    public synchronized void write() {
+        if (!dirty) {
+            return;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        Map<String, Entry> current = entries;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(Locale.getDefault().toLanguageTag());
+            out.writeInt(current.size());
+            for (Entry entry : current.values()) {
+                entry.write(out);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write snapshot", e);
+            return;
+        }
+        // 先写临时文件再重命名，避免写到一半被杀进程导致快照损坏
+        if (tempFile.renameTo(file)) {
+            dirty = false;
+        } else {
+            Log.w(TAG, "Failed to replace snapshot file");
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.treelang.mean.utils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity list of lines that overwrites its oldest line once full, so memory stays bounded
+ * however much output a command produces. Index 0 is the oldest line still kept.
+ * <p>
+ * Not thread-safe; meant to be used from the UI thread only.
+ */
+public class LineRingBuffer {
+    private final String[] lines;
+    // 最早一行所在的位置
+    private int head;
+    private int size;
+    // 因容量不足被覆盖的行数
+    private long evicted;
+
+    public LineRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        lines = new String[capacity];
+    }
+
+    /**
+     * Appends a line and returns the number of old lines it pushed out, 0 or 1.
+     */
+    public int add(String line) {
+        int capacity = lines.length;
+        if (size < capacity) {
+            lines[(head + size) % capacity] = line;
+            size++;
+            return 0;
+        }
+        lines[head] = line;
+        head = (head + 1) % capacity;
+        evicted++;
+        return 1;
+    }
+
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return lines[(head + index) % lines.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return lines.length;
+    }
+
+    // 迄今被覆盖的行数
+    public long getEvictedCount() {
+        return evicted;
+    }
+
+    public void clear() {
+        Arrays.fill(lines, null);
+        head = 0;
+        size = 0;
+        evicted = 0;
+    }
+}
@@ -0,0 +1,155 @@
+package com.treelang.mean.utils;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the output lines of one command from the shell reader to an
+ * {@link ShellExecutor.OutputListener} through a bounded buffer, delivered on a shared pool.
+ * <p>
+ * Lines are delivered in order and one at a time per command. {@link #finish} waits until every
+ * buffered line has been delivered, so a command never completes before its output. When the
+ * listener falls behind, the {@link Overflow} policy decides whether the reader waits, which in
+ * turn blocks the command on a full pipe, or whether lines are dropped and counted.
+ */
+public class OutputPump implements ShellExecutor.OutputListener {
+    private static final String TAG = "OutputPump";
+    // 每次从缓冲区取出交付的最大行数
+    private static final int DELIVERY_BATCH = 256;
+
+    public enum Overflow {
+        // 缓冲区满时读取方等待，输出不会丢失
+        BLOCK,
+        // 丢弃最早的未交付行，保留最新输出，适合 logcat 这类持续输出
+        DROP_OLDEST,
+        // 丢弃新读到的行，保留开头的输出
+        DROP_NEWEST
+    }
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService deliveryPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            30, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "shell-output-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ShellExecutor.OutputListener listener;
+    private final Overflow overflow;
+    private final int capacity;
+    private final ArrayDeque<String> buffer = new ArrayDeque<>();
+    private final CountDownLatch drained = new CountDownLatch(1);
+    private int dropped;
+    private boolean scheduled;
+    private boolean closed;
+
+    public OutputPump(ShellExecutor.OutputListener listener, Overflow overflow, int capacity) {
+        this.listener = listener;
+        this.overflow = overflow;
+        this.capacity = capacity;
+    }
+
+    // 在读取线程中调用
+    @Override
+    public void onOutputLine(String line) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (overflow == Overflow.BLOCK) {
+                while (buffer.size() >= capacity && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            } else if (buffer.size() >= capacity) {
+                dropped++;
+                if (overflow == Overflow.DROP_NEWEST) {
+                    return;
+                }
+                buffer.pollFirst();
+            }
+            buffer.addLast(line);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        deliveryPool.execute(this::drain);
+    }
+
+    /**
+     * Marks the end of the output and waits until everything buffered has been delivered.
+     */
+    public void finish() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+            if (!scheduled) {
+                drained.countDown();
+            }
+        }
+        drained.await();
+    }
+
+    /**
+     * Discards undelivered output, for commands that were cancelled or failed. Does not wait for a
+     * delivery that is already in progress.
+     */
+    public synchronized void abort() {
+        closed = true;
+        buffer.clear();
+        dropped = 0;
+        notifyAll();
+        drained.countDown();
+    }
+
+    private void drain() {
+        while (true) {
+            List<String> batch;
+            int droppedNow;
+            synchronized (this) {
+                if (buffer.isEmpty() && dropped == 0) {
+                    scheduled = false;
+                    if (closed) {
+                        drained.countDown();
+                    }
+                    return;
+                }
+                batch = new ArrayList<>(Math.min(buffer.size(), DELIVERY_BATCH));
+                while (batch.size() < DELIVERY_BATCH && !buffer.isEmpty()) {
+                    batch.add(buffer.pollFirst());
+                }
+                droppedNow = dropped;
+                dropped = 0;
+                // 唤醒等待缓冲区空间的读取线程
+                notifyAll();
+            }
+            try {
+                // 丢弃的行在 DROP_OLDEST 时位于本批之前，在 DROP_NEWEST 时位于之后
+                if (droppedNow > 0 && overflow == Overflow.DROP_OLDEST) {
+                    listener.onLinesDropped(droppedNow);
+                }
+                for (String line : batch) {
+                    listener.onOutputLine(line);
+                }
+                if (droppedNow > 0 && overflow == Overflow.DROP_NEWEST) {
+                    listener.onLinesDropped(droppedNow);
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Output listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.treelang.mean.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes every output line to a stream and passes it on to another listener, so a long capture
+ * goes to a file while the screen only shows what the listener keeps.
+ * <p>
+ * Meant to run behind an {@link OutputPump} with {@link OutputPump.Overflow#BLOCK}: the pump's
+ * bounded buffer is the channel between the shell reader and the writes, which happen on the
+ * pump's delivery thread. A slow destination therefore slows the command down instead of lines
+ * piling up in memory or being dropped. A failed write stops the file output but not the command;
+ * the error is reported by {@link #close}.
+ */
+public class OutputTee implements ShellExecutor.OutputListener {
+    // 写入目标文件前缓冲的字符数
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+
+    private final Writer writer;
+    private final ShellExecutor.OutputListener downstream;
+    private IOException error;
+    private long linesWritten;
+
+    public OutputTee(OutputStream out, ShellExecutor.OutputListener downstream) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_CHARS);
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void onOutputLine(String line) {
+        // 命令被取消时 close 可能与最后一次交付同时进行
+        synchronized (this) {
+            if (error == null) {
+                try {
+                    writer.write(line);
+                    writer.write('\n');
+                    linesWritten++;
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        }
+        if (downstream != null) {
+            downstream.onOutputLine(line);
+        }
+    }
+
+    @Override
+    public void onLinesDropped(int count) {
+        if (downstream != null) {
+            downstream.onLinesDropped(count);
+        }
+    }
+
+    public synchronized long getLinesWritten() {
+        return linesWritten;
+    }
+
+    /**
+     * Flushes and closes the stream. Throws the first write error, if any, so an incomplete file
+     * is not reported as saved.
+     */
+    public synchronized void close() throws IOException {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.treelang.mean.utils;
+
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.Signature;
+import android.content.pm.SigningInfo;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Heavy per-package data (permissions, signing certificates, meta-data) that the app list does
+ * not need. It is fetched for a single package on demand instead of with the bulk query.
+ */
+public class PackageDetails {
+
+    /**
+     * Parts of {@link PackageInfo} that are only filled when the matching query flag is passed.
+     */
+    public enum Field {
+        PERMISSIONS(PackageManager.GET_PERMISSIONS),
+        SIGNING_CERTIFICATES(PackageManager.GET_SIGNING_CERTIFICATES),
+        META_DATA(PackageManager.GET_META_DATA);
+
+        final int queryFlag;
+
+        Field(int queryFlag) {
+            this.queryFlag = queryFlag;
+        }
+    }
+
+    // 应用列表只使用 PackageInfo 的基本字段，批量查询时不附带任何额外数据
+    public static final Set<Field> LIST_FIELDS = Collections.unmodifiableSet(EnumSet.noneOf(Field.class));
+
+    // 详情页需要的额外数据
+    public static final Set<Field> DETAIL_FIELDS = Collections.unmodifiableSet(
+            EnumSet.of(Field.PERMISSIONS, Field.SIGNING_CERTIFICATES, Field.META_DATA));
+
+    public static int queryFlagsFor(Set<Field> fields) {
+        int flags = 0;
+        for (Field field : fields) {
+            flags |= field.queryFlag;
+        }
+        return flags;
+    }
+
+    /**
+     * A requested permission and whether it is currently granted.
+     */
+    public static class Permission {
+        public final String name;
+        public final boolean granted;
+
+        Permission(String name, boolean granted) {
+            this.name = name;
+            this.granted = granted;
+        }
+    }
+
+    private final List<Permission> permissions;
+    private final List<String> signerDigests;
+    private final int metaDataCount;
+
+    private PackageDetails(PackageInfo packageInfo) {
+        permissions = new ArrayList<>();
+        if (packageInfo.requestedPermissions != null) {
+            for (int i = 0; i < packageInfo.requestedPermissions.length; i++) {
+                boolean granted = packageInfo.requestedPermissionsFlags != null
+                        && (packageInfo.requestedPermissionsFlags[i] & PackageInfo.REQUESTED_PERMISSION_GRANTED) != 0;
+                permissions.add(new Permission(packageInfo.requestedPermissions[i], granted));
+            }
+        }
+
+        signerDigests = new ArrayList<>();
+        SigningInfo signingInfo = packageInfo.signingInfo;
+        if (signingInfo != null) {
+            // 多签名时取全部签名者，否则取当前签名（证书轮换历史中的最后一个）
+            if (signingInfo.hasMultipleSigners()) {
+                for (Signature signature : signingInfo.getApkContentsSigners()) {
+                    signerDigests.add(sha256(signature.toByteArray()));
+                }
+            } else {
+                Signature[] history = signingInfo.getSigningCertificateHistory();
+                if (history != null && history.length > 0) {
+                    signerDigests.add(sha256(history[history.length - 1].toByteArray()));
+                }
+            }
+        }
+
+        metaDataCount = packageInfo.applicationInfo != null && packageInfo.applicationInfo.metaData != null
+                ? packageInfo.applicationInfo.metaData.size()
+                : 0;
+    }
+
+    /**
+     * Queries the detail fields of a single package. Performs a Binder call, so call it off the main thread.
+     */
+    public static PackageDetails load(PackageManager pm, String packageName) throws PackageManager.NameNotFoundException {
+        return new PackageDetails(pm.getPackageInfo(packageName, queryFlagsFor(DETAIL_FIELDS)));
+    }
+
+    public List<Permission> getPermissions() {
+        return permissions;
+    }
+
+    // SHA-256 证书摘要，十六进制大写，以冒号分隔
+    public List<String> getSignerDigests() {
+        return signerDigests;
+    }
+
+    public int getMetaDataCount() {
+        return metaDataCount;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder builder = new StringBuilder(digest.length * 3);
+            for (int i = 0; i < digest.length; i++) {
+                if (i > 0) {
+                    builder.append(':');
+                }
+                builder.append(String.format("%02X", digest[i]));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return "";
+        }
+    }
+}
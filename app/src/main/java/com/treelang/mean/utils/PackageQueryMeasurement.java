@@ -0,0 +1,91 @@
+package com.treelang.mean.utils;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Debug-only comparison of the bulk package query with the list fields against the query with
+ * all detail fields. Logs latency, retained Java heap and the parceled size of the result, which
+ * is what has to cross the Binder boundary.
+ */
+public class PackageQueryMeasurement {
+    private static final String TAG = "PackageQuery";
+    private static final int ROUNDS = 3;
+
+    private static boolean measured = false;
+
+    /**
+     * Whether a developer asked for the measurement, with
+     * {@code adb shell setprop log.tag.PackageQuery DEBUG} on a debuggable build. It queries the
+     * package list seven times and forces garbage collections, so it is off by default.
+     */
+    public static boolean isEnabled(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0
+                && Log.isLoggable(TAG, Log.DEBUG);
+    }
+
+    /**
+     * Runs the measurement once per process when {@link #isEnabled enabled}. Blocks for a few
+     * seconds, so call it from a thread of its own after the list has been shown.
+     */
+    public static synchronized void measureOnce(Context context) {
+        if (measured || !isEnabled(context)) {
+            return;
+        }
+        measured = true;
+
+        PackageManager pm = context.getPackageManager();
+        // 先查询一次预热，避免第一次的类加载和缓存影响结果
+        pm.getInstalledPackages(0);
+        measure(pm, "list", PackageDetails.LIST_FIELDS);
+        measure(pm, "detail", PackageDetails.DETAIL_FIELDS);
+    }
+
+    private static void measure(PackageManager pm, String name, Set<PackageDetails.Field> fields) {
+        int flags = PackageDetails.queryFlagsFor(fields);
+        long totalNanos = 0;
+        long heapBytes = 0;
+        int parcelBytes = 0;
+        int count = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long heapBefore = usedHeap();
+            long start = SystemClock.elapsedRealtimeNanos();
+            List<PackageInfo> packages = pm.getInstalledPackages(flags);
+            totalNanos += SystemClock.elapsedRealtimeNanos() - start;
+            // 结果列表仍然被引用，这里的差值即为它占用的堆内存
+            heapBytes += usedHeap() - heapBefore;
+            count = packages.size();
+            if (round == 0) {
+                parcelBytes = parceledSize(packages);
+            }
+        }
+        Log.d(TAG, String.format("%s query (flags=0x%x): %d packages, %.1f ms, %d KiB heap, %d KiB parceled",
+                name, flags, count, totalNanos / 1e6 / ROUNDS, heapBytes / 1024 / ROUNDS, parcelBytes / 1024));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static int parceledSize(List<PackageInfo> packages) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            for (PackageInfo packageInfo : packages) {
+                packageInfo.writeToParcel(parcel, 0);
+            }
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
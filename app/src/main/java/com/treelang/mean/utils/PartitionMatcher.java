@@ -0,0 +1,172 @@
+package com.treelang.mean.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves an APK's {@code sourceDir} to the partition and app directory it was installed from,
+ * for example {@code /product/priv-app/Foo/Foo.apk} to {@code (PRODUCT, PRIV_APP)}.
+ * <p>
+ * Registered directory prefixes are compiled into a trie over path segments, so a path is matched
+ * in one pass no matter how many prefixes are known. A {@code *} segment matches any single
+ * segment, e.g. the module directory in {@code /apex/*}{@code /priv-app/}. When several prefixes
+ * match, the longest one wins.
+ * <p>
+ * Registration is not thread-safe; register additional prefixes before sharing the matcher.
+ */
+public class PartitionMatcher {
+
+    public enum Partition {
+        SYSTEM,
+        SYSTEM_EXT,
+        PRODUCT,
+        VENDOR,
+        OEM,
+        ODM,
+        APEX,
+        DATA,
+        UNKNOWN
+    }
+
+    public enum DirKind {
+        APP,
+        PRIV_APP,
+        DATA_APP,
+        OTHER
+    }
+
+    /**
+     * Where a package is installed. Instances are shared between all paths under the same prefix.
+     */
+    public static final class Location {
+        public static final Location UNKNOWN = new Location(Partition.UNKNOWN, DirKind.OTHER);
+
+        public final Partition partition;
+        public final DirKind dirKind;
+
+        Location(Partition partition, DirKind dirKind) {
+            this.partition = partition;
+            this.dirKind = dirKind;
+        }
+
+        // 是否位于只读的系统分区（system、product、vendor 等）
+        public boolean isReadOnlyPartition() {
+            return partition != Partition.DATA && partition != Partition.UNKNOWN;
+        }
+    }
+
+    private static final String WILDCARD = "*";
+
+    private static final class Node {
+        final String segment;
+        final List<Node> children = new ArrayList<>(2);
+        Location location;
+
+        Node(String segment) {
+            this.segment = segment;
+        }
+
+        // 精确匹配优先于通配符，不做回溯
+        Node child(String path, int start, int end) {
+            Node wildcard = null;
+            for (Node child : children) {
+                if (WILDCARD.equals(child.segment)) {
+                    wildcard = child;
+                } else if (child.segment.length() == end - start
+                        && path.regionMatches(start, child.segment, 0, end - start)) {
+                    return child;
+                }
+            }
+            return wildcard;
+        }
+    }
+
+    private static final PartitionMatcher DEFAULT = withDefaults();
+
+    private final Node root = new Node("");
+
+    public static PartitionMatcher getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a matcher that knows the partitions of AOSP devices, including {@code /odm} and {@code /apex}.
+     */
+    public static PartitionMatcher withDefaults() {
+        PartitionMatcher matcher = new PartitionMatcher();
+        matcher.registerPartition("/system/", Partition.SYSTEM);
+        // 某些设备可能在system分区的子目录下也有核心应用
+        matcher.register("/system/system_app/", Partition.SYSTEM, DirKind.APP);
+        // 其余分区既可以挂载在根目录，也可以位于 /system 下
+        for (String root : new String[]{"/", "/system/"}) {
+            matcher.registerPartition(root + "system_ext/", Partition.SYSTEM_EXT);
+            matcher.registerPartition(root + "product/", Partition.PRODUCT);
+            matcher.registerPartition(root + "vendor/", Partition.VENDOR);
+            matcher.registerPartition(root + "oem/", Partition.OEM);
+            matcher.registerPartition(root + "odm/", Partition.ODM);
+        }
+        matcher.registerPartition("/apex/*/", Partition.APEX);
+        matcher.register("/data/app/", Partition.DATA, DirKind.APP);
+        return matcher;
+    }
+
+    // 注册分区下的 app、priv-app 和 data-app 三个目录
+    public PartitionMatcher registerPartition(String partitionDir, Partition partition) {
+        register(partitionDir + "app/", partition, DirKind.APP);
+        register(partitionDir + "priv-app/", partition, DirKind.PRIV_APP);
+        register(partitionDir + "data-app/", partition, DirKind.DATA_APP);
+        return this;
+    }
+
+    /**
+     * Registers a directory prefix. The prefix must be absolute and end with {@code /}.
+     */
+    public PartitionMatcher register(String dirPrefix, Partition partition, DirKind dirKind) {
+        if (!dirPrefix.startsWith("/") || !dirPrefix.endsWith("/")) {
+            throw new IllegalArgumentException("Prefix must start and end with '/': " + dirPrefix);
+        }
+        Node node = root;
+        for (String segment : dirPrefix.substring(1, dirPrefix.length() - 1).split("/")) {
+            Node next = null;
+            for (Node child : node.children) {
+                if (child.segment.equals(segment)) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next == null) {
+                next = new Node(segment);
+                node.children.add(next);
+            }
+            node = next;
+        }
+        node.location = new Location(partition, dirKind);
+        return this;
+    }
+
+    /**
+     * Returns the location of the longest registered prefix of {@code sourceDir},
+     * or {@link Location#UNKNOWN} if none matches.
+     */
+    public Location match(String sourceDir) {
+        if (sourceDir == null || !sourceDir.startsWith("/")) {
+            return Location.UNKNOWN;
+        }
+        Location found = Location.UNKNOWN;
+        Node node = root;
+        int start = 1;
+        int end;
+        // 注册的前缀都以 / 结尾，所以只需要处理后面还有 / 的段
+        while ((end = sourceDir.indexOf('/', start)) >= 0) {
+            node = node.child(sourceDir, start, end);
+            if (node == null) {
+                break;
+            }
+            if (node.location != null) {
+                found = node.location;
+            }
+            start = end + 1;
+        }
+        return found;
+    }
+}
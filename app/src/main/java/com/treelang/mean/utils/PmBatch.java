@@ -0,0 +1,234 @@
+package com.treelang.mean.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles many per-package {@code pm} operations into a few shell scripts and parses the output
+ * back into one {@link Outcome} per package.
+ * <p>
+ * Each operation in a script is followed by a marker line carrying the operation's index and its
+ * exit code, so a single shell round-trip reports every package individually. Scripts are run
+ * in parallel on a {@link ShellExecutor}.
+ */
+public class PmBatch {
+    // 每个脚本包含的操作数，脚本之间可以并行执行
+    private static final int OPERATIONS_PER_SCRIPT = 25;
+    // 包名只允许这些字符，防止备份文件中的内容被当作命令执行
+    private static final Pattern PACKAGE_NAME = Pattern.compile("[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*");
+    // 没有执行或没有得到结果的操作使用的退出码
+    private static final int EXIT_NOT_RUN = -1;
+    // 批量操作被取消、没有得到结果的操作使用的退出码
+    private static final int EXIT_CANCELLED = -2;
+    // 脚本的期限按操作数计算；超时后脚本被结束，没有结果的操作按失败处理
+    private static final long TIMEOUT_PER_OPERATION_MS = 30_000;
+
+    public enum Action {
+        DISABLE("pm disable-user", "Disabled"),
+        ENABLE("pm enable", "Installed"),
+        UNINSTALL("pm uninstall", "Uninstalled");
+
+        final String command;
+        // 成功后应用的状态
+        public final String resultingStatus;
+
+        Action(String command, String resultingStatus) {
+            this.command = command;
+            this.resultingStatus = resultingStatus;
+        }
+    }
+
+    /**
+     * Result of one operation. Output holds the lines {@code pm} printed for this package.
+     */
+    public static class Outcome {
+        public final String packageName;
+        public final Action action;
+        public final int exitCode;
+        public final String output;
+
+        Outcome(String packageName, Action action, int exitCode, String output) {
+            this.packageName = packageName;
+            this.action = action;
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+
+        public boolean isSuccess() {
+            return exitCode == 0;
+        }
+
+        // 批量操作被取消时没有执行完的操作
+        public boolean isCancelled() {
+            return exitCode == EXIT_CANCELLED;
+        }
+    }
+
+    public interface OutcomeListener {
+        // 每个包的结果解析出来后立即回调，在工作线程中执行
+        void onOutcome(Outcome outcome);
+    }
+
+    private final List<String> packageNames = new ArrayList<>();
+    private final List<Action> actions = new ArrayList<>();
+    // 已提交的脚本，取消时结束，统计时取各自的记录
+    private final List<ShellExecutor.CommandFuture> running = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    public PmBatch add(Action action, String packageName) {
+        actions.add(action);
+        packageNames.add(packageName);
+        return this;
+    }
+
+    public int size() {
+        return packageNames.size();
+    }
+
+    /**
+     * Runs all operations and completes with their outcomes in the order they were added. Invalid
+     * package names and operations whose script died or timed out before reporting them fail with
+     * exit code -1, operations left unfinished by {@link #cancel} with -2.
+     */
+    public CompletableFuture<List<Outcome>> run(ShellExecutor executor, OutcomeListener listener) {
+        int count = packageNames.size();
+        Outcome[] outcomes = new Outcome[count];
+        String token = "__mean_op_" + UUID.randomUUID().toString().replace("-", "");
+        List<CompletableFuture<?>> scripts = new ArrayList<>();
+
+        for (int from = 0; from < count; from += OPERATIONS_PER_SCRIPT) {
+            int to = Math.min(from + OPERATIONS_PER_SCRIPT, count);
+            StringBuilder script = new StringBuilder();
+            for (int i = from; i < to; i++) {
+                String packageName = packageNames.get(i);
+                if (!PACKAGE_NAME.matcher(packageName).matches()) {
+                    report(outcomes, i, EXIT_NOT_RUN, "Invalid package name", listener);
+                    continue;
+                }
+                script.append(actions.get(i).command).append(' ').append(packageName)
+                        .append("; echo \"").append(token).append(' ').append(i).append(" $?\"\n");
+            }
+            if (script.length() == 0) {
+                continue;
+            }
+            ScriptParser parser = new ScriptParser(token, outcomes, listener);
+            long timeoutMs = TIMEOUT_PER_OPERATION_MS * (to - from);
+            ShellExecutor.CommandFuture future = executor.execute(script.toString(), timeoutMs, parser);
+            synchronized (running) {
+                running.add(future);
+            }
+            scripts.add(future.handle((result, error) -> null));
+        }
+        if (cancelled) {
+            cancel();
+        }
+
+        return CompletableFuture.allOf(scripts.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            // 脚本异常结束时，没有输出标记的操作按失败处理
+            for (int i = 0; i < count; i++) {
+                if (outcomes[i] == null) {
+                    if (cancelled) {
+                        report(outcomes, i, EXIT_CANCELLED, "Cancelled", listener);
+                    } else {
+                        report(outcomes, i, EXIT_NOT_RUN, "No result", listener);
+                    }
+                }
+            }
+            List<Outcome> list = new ArrayList<>(count);
+            Collections.addAll(list, outcomes);
+            return list;
+        });
+    }
+
+    /**
+     * Stops the batch: queued scripts do not start and running ones are killed together with the
+     * {@code pm} processes they started. Operations that already reported keep their outcome.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (running) {
+            for (ShellExecutor.CommandFuture future : running) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Completes with the {@link ShellStats.Record}s of this batch's scripts, in submission order,
+     * once every script started by {@link #run} has been accounted for. Unlike the executor's
+     * recent records it leaves out commands that ran alongside the batch.
+     */
+    public CompletableFuture<List<ShellStats.Record>> getRecords() {
+        List<CompletableFuture<ShellStats.Record>> records = new ArrayList<>();
+        synchronized (running) {
+            for (ShellExecutor.CommandFuture future : running) {
+                records.add(future.getRecord());
+            }
+        }
+        return CompletableFuture.allOf(records.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<ShellStats.Record> list = new ArrayList<>(records.size());
+            for (CompletableFuture<ShellStats.Record> record : records) {
+                list.add(record.join());
+            }
+            return list;
+        });
+    }
+
+    private void report(Outcome[] outcomes, int index, int exitCode, String output, OutcomeListener listener) {
+        Outcome outcome = new Outcome(packageNames.get(index), actions.get(index), exitCode, output);
+        synchronized (outcomes) {
+            outcomes[index] = outcome;
+        }
+        if (listener != null) {
+            listener.onOutcome(outcome);
+        }
+    }
+
+    // 逐行解析一个脚本的输出，两个标记之间的输出属于后一个标记对应的操作
+    private class ScriptParser implements ShellExecutor.OutputListener {
+        private final String token;
+        private final Outcome[] outcomes;
+        private final OutcomeListener listener;
+        private final StringBuilder pending = new StringBuilder();
+
+        ScriptParser(String token, Outcome[] outcomes, OutcomeListener listener) {
+            this.token = token;
+            this.outcomes = outcomes;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onOutputLine(String line) {
+            int index = line.indexOf(token + " ");
+            if (index < 0) {
+                appendOutput(line);
+                return;
+            }
+            if (index > 0) {
+                appendOutput(line.substring(0, index));
+            }
+            String[] fields = line.substring(index + token.length() + 1).trim().split(" ");
+            try {
+                int operation = Integer.parseInt(fields[0]);
+                int exitCode = Integer.parseInt(fields[1]);
+                if (operation >= 0 && operation < outcomes.length) {
+                    report(outcomes, operation, exitCode, pending.toString(), listener);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                // 标记格式不对时忽略，该操作最终按失败处理
+            }
+            pending.setLength(0);
+        }
+
+        private void appendOutput(String line) {
+            if (pending.length() > 0) {
+                pending.append('\n');
+            }
+            pending.append(line);
+        }
+    }
+}
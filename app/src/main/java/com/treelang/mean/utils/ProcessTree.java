@@ -0,0 +1,65 @@
+package com.treelang.mean.utils;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kills a command together with every process it started.
+ * <p>
+ * Killing only the command's own process leaves its children running, reparented to init and
+ * still holding the output pipe, so the reader never sees the end of the output. The tree is
+ * walked top-down by a small shell function: each process is stopped first so it cannot fork
+ * again, then its children are handled, then it is killed. The function runs in the same shell
+ * as the command, so processes started under {@code su} can be seen and killed as well.
+ */
+final class ProcessTree {
+    private static final String TAG = "ProcessTree";
+    private static final String KILL_TREE = "t() { kill -STOP \"$1\" 2>/dev/null; "
+            + "for c in $(pgrep -P \"$1\" 2>/dev/null); do t \"$c\"; done; "
+            + "kill -9 \"$1\" 2>/dev/null; }; t ";
+    // 等待结束进程树的最长时间
+    private static final long KILL_TIMEOUT_MS = 2000;
+
+    // 结束进程需要启动 shell，不放在调用方线程（例如主线程）中执行
+    private static final ExecutorService killer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shell-killer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ProcessTree() {
+    }
+
+    /**
+     * Kills the tree rooted at {@code pid} in the background, then destroys {@code process}, which
+     * may be null. The tree has to go first: once its root is gone, the children can no longer be
+     * found by their parent.
+     */
+    static void killAsync(int pid, String shell, Process process) {
+        killer.execute(() -> {
+            kill(pid, shell);
+            if (process != null) {
+                process.destroyForcibly();
+            }
+        });
+    }
+
+    static void kill(int pid, String shell) {
+        try {
+            Process process = new ProcessBuilder(shell, "-c", KILL_TREE + pid).redirectErrorStream(true).start();
+            process.getOutputStream().close();
+            if (!process.waitFor(KILL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                Log.w(TAG, "Timed out killing process tree of " + pid);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to kill process tree of " + pid, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,667 @@
+package com.treelang.mean.utils;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs shell commands on a bounded pool of workers, each running one shell command at a time.
+ * <p>
+ * In session mode commands are multiplexed over long-lived {@link ShellSession}s, at most one per
+ * worker, instead of spawning a new process for every command. Sessions idle for a while are
+ * closed and a session that died or was killed is replaced on the next command.
+ * <p>
+ * Every command returns a {@link CommandFuture} that completes with the exit code and the captured
+ * output, completes exceptionally with a {@link TimeoutException} once its timeout expires, and
+ * can be cancelled. Timing out or cancelling kills the command with every process it started, see
+ * {@link ProcessTree}, which also frees its worker. Standard error is merged into
+ * standard output, so lines keep the order in which the command wrote them.
+ * <p>
+ * Output is read on the worker itself, without extra reader threads, and passed to the caller's
+ * listener through an {@link OutputPump}. The future completes only after the pump has delivered
+ * every line.
+ * <p>
+ * {@link #executeBinary} streams standard output as raw bytes instead, for commands such as
+ * {@code screencap -p}, {@code cat} of an APK or {@code tar}. Binary commands always run in their
+ * own process, since a session's stdout is line based, and their standard error is kept apart
+ * as the result's output lines.
+ * <p>
+ * Every finished command is recorded in {@link #getStats()}: queue wait, fork time, run time,
+ * output bytes and how it ended.
+ */
+public class ShellExecutor {
+    private static final String TAG = "ShellExecutor";
+    public static final long NO_TIMEOUT = 0;
+
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final String DEFAULT_SESSION_SHELL = "sh";
+    // 会话空闲超过该时间后关闭
+    private static final long SESSION_IDLE_MS = 60_000;
+    // 捕获的输出行数上限，超出部分只交给 OutputListener
+    private static final int MAX_CAPTURED_LINES = 10000;
+    // 读取线程与监听器之间缓冲的行数
+    private static final int DEFAULT_BUFFER_LINES = 1024;
+    // 二进制输出每次读取的字节数
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static volatile ShellExecutor defaultInstance;
+
+    public interface OutputListener {
+        // 每行输出，按顺序回调，回调全部完成后命令才会结束
+        void onOutputLine(String line);
+
+        // 输出过快、缓冲区已满时被丢弃的行数
+        default void onLinesDropped(int count) {
+        }
+    }
+
+    public interface ChunkListener {
+        // 二进制输出的一块数据，在工作线程中回调；缓冲区只在回调期间有效，需要保留时自行复制
+        void onChunk(ByteBuffer chunk) throws IOException;
+    }
+
+    /**
+     * Exit code and output of a finished command.
+     */
+    public static class CommandResult {
+        private final String command;
+        private final int exitCode;
+        private final List<String> output;
+        private final boolean truncated;
+        private final long byteCount;
+
+        CommandResult(String command, int exitCode, List<String> output, boolean truncated, long byteCount) {
+            this.command = command;
+            this.exitCode = exitCode;
+            this.output = Collections.unmodifiableList(output);
+            this.truncated = truncated;
+            this.byteCount = byteCount;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public boolean isSuccess() {
+            return exitCode == 0;
+        }
+
+        public List<String> getOutput() {
+            return output;
+        }
+
+        public String getOutputText() {
+            return String.join("\n", output);
+        }
+
+        // 输出超过上限时只保留了前面的部分
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        // 二进制模式下标准输出的总字节数，文本模式下为 0
+        public long getByteCount() {
+            return byteCount;
+        }
+    }
+
+    /**
+     * Handle of a submitted command. Cancelling it kills the process if it is already running.
+     * Stages derived from it with {@code thenApply} and the like do not propagate cancellation,
+     * so keep this handle to cancel.
+     */
+    public static class CommandFuture extends CompletableFuture<CommandResult> {
+        private Process process;
+        private ScheduledFuture<?> timeout;
+        // 命令进程（会话模式下为命令作业）的 pid 及用来结束它的 shell
+        private int pid;
+        private String shell;
+        // 各阶段开始的时间（System.nanoTime），用于统计
+        private final long queuedAt = System.nanoTime();
+        private volatile long startedAt;
+        private volatile long forkedAt;
+        private volatile long bytesOut;
+        // 命令结束并记入统计后完成
+        private final CompletableFuture<ShellStats.Record> record = new CompletableFuture<>();
+
+        /**
+         * Completes with this command's own {@link ShellStats.Record} once it has been accounted
+         * for, which is shortly after the command itself completed.
+         */
+        public CompletableFuture<ShellStats.Record> getRecord() {
+            return record;
+        }
+
+        // 命令已结束（例如已被取消）时返回 false，调用方需自行结束进程
+        synchronized boolean attach(Process process) {
+            if (isDone()) {
+                return false;
+            }
+            this.process = process;
+            return true;
+        }
+
+        // 命令进程已启动并报告了 pid；此时已被取消的命令直接结束
+        synchronized void attachPid(int pid, String shell) {
+            this.pid = pid;
+            this.shell = shell;
+            markForked();
+            if (isDone()) {
+                ProcessTree.killAsync(pid, shell, null);
+            }
+        }
+
+        synchronized void setTimeout(ScheduledFuture<?> timeout) {
+            this.timeout = timeout;
+        }
+
+        void markStarted() {
+            startedAt = System.nanoTime();
+        }
+
+        void markForked() {
+            forkedAt = System.nanoTime();
+        }
+
+        void setBytesOut(long bytesOut) {
+            this.bytesOut = bytesOut;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                kill();
+            }
+            return cancelled;
+        }
+
+        boolean timeOut(long timeoutMs) {
+            boolean timedOut = completeExceptionally(new TimeoutException("Command timed out after " + timeoutMs + " ms"));
+            if (timedOut) {
+                kill();
+            }
+            return timedOut;
+        }
+
+        // 结束命令的整个进程树，再结束进程本身；会话模式下结束的是整个会话，会话随后被丢弃
+        synchronized void kill() {
+            if (pid > 0) {
+                ProcessTree.killAsync(pid, shell, process);
+            } else if (process != null) {
+                process.destroyForcibly();
+            }
+            release();
+        }
+
+        synchronized void release() {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+    }
+
+    // 统计读取的字节数
+    static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    // 收集输出行，并经 OutputPump 转发给调用方的监听器
+    private static class OutputCollector implements OutputListener {
+        private final OutputPump pump;
+        private final List<String> lines = new ArrayList<>();
+        private boolean truncated;
+
+        OutputCollector(OutputPump pump) {
+            this.pump = pump;
+        }
+
+        @Override
+        public void onOutputLine(String line) {
+            if (lines.size() < MAX_CAPTURED_LINES) {
+                lines.add(line);
+            } else {
+                truncated = true;
+            }
+            if (pump != null) {
+                pump.onOutputLine(line);
+            }
+        }
+
+        // 等待监听器收到全部输出后再生成结果
+        CommandResult finish(String command, int exitCode) throws InterruptedException {
+            if (pump != null) {
+                pump.finish();
+            }
+            return new CommandResult(command, exitCode, lines, truncated, 0);
+        }
+
+        void abort() {
+            if (pump != null) {
+                pump.abort();
+            }
+        }
+    }
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService watchdog;
+    // 二进制模式下读取标准错误
+    private final ExecutorService stderrReaders;
+    // 为 null 时每条命令启动一个新进程
+    private final String sessionShell;
+    // 空闲的会话，最近用过的在前
+    private final Deque<ShellSession> idleSessions = new ArrayDeque<>();
+    private final ShellStats stats = new ShellStats();
+
+    public ShellExecutor(int poolSize) {
+        this(poolSize, null);
+    }
+
+    /**
+     * @param poolSize     maximum number of commands running at the same time
+     * @param sessionShell shell kept alive between commands, such as {@code sh} or {@code su};
+     *                     null to start a new process for every command
+     */
+    public ShellExecutor(int poolSize, String sessionShell) {
+        this.sessionShell = sessionShell;
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shell-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workers.allowCoreThreadTimeOut(true);
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shell-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        stderrReaders = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "shell-stderr");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (sessionShell != null) {
+            watchdog.scheduleWithFixedDelay(this::closeIdleSessions, SESSION_IDLE_MS, SESSION_IDLE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static ShellExecutor getDefault() {
+        if (defaultInstance == null) {
+            synchronized (ShellExecutor.class) {
+                if (defaultInstance == null) {
+                    defaultInstance = new ShellExecutor(DEFAULT_POOL_SIZE, DEFAULT_SESSION_SHELL);
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    public ShellStats getStats() {
+        return stats;
+    }
+
+    public CommandFuture execute(String command) {
+        return execute(command, NO_TIMEOUT, null);
+    }
+
+    /**
+     * Queues {@code command}. The timeout counts from the moment the command starts running, time
+     * spent waiting for a free worker is not included.
+     *
+     * @param timeoutMs {@link #NO_TIMEOUT} to let the command run until it exits
+     * @param listener  receives every output line as it is read, may be null
+     */
+    public CommandFuture execute(String command, long timeoutMs, OutputListener listener) {
+        return execute(command, timeoutMs, listener, OutputPump.Overflow.BLOCK, DEFAULT_BUFFER_LINES);
+    }
+
+    /**
+     * Like {@link #execute(String, long, OutputListener)}, with the policy applied when
+     * {@code listener} falls more than {@code bufferLines} lines behind the command's output.
+     */
+    public CommandFuture execute(String command, long timeoutMs, OutputListener listener,
+                                 OutputPump.Overflow overflow, int bufferLines) {
+        CommandFuture future = new CommandFuture();
+        workers.execute(() -> run(command, timeoutMs, listener, overflow, bufferLines, future));
+        return future;
+    }
+
+    /**
+     * Runs {@code command} and streams its standard output to {@code consumer} in raw chunks,
+     * without decoding it into strings. The result's output holds standard error.
+     */
+    public CommandFuture executeBinary(String command, long timeoutMs, ChunkListener consumer) {
+        CommandFuture future = new CommandFuture();
+        workers.execute(() -> runBinary(command, timeoutMs, consumer, future));
+        return future;
+    }
+
+    /**
+     * Runs {@code command} and writes its standard output to {@code out}. The stream is not closed.
+     */
+    public CommandFuture executeBinary(String command, long timeoutMs, OutputStream out) {
+        return executeBinary(command, timeoutMs,
+                chunk -> out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining()));
+    }
+
+    private void run(String command, long timeoutMs, OutputListener listener, OutputPump.Overflow overflow,
+                     int bufferLines, CommandFuture future) {
+        // 排队期间已被取消的命令不再启动
+        if (future.isDone()) {
+            record(command, future);
+            return;
+        }
+        future.markStarted();
+        OutputCollector collector = new OutputCollector(
+                listener != null ? new OutputPump(listener, overflow, bufferLines) : null);
+        // 超时或取消后不再交付剩余输出，同时唤醒等待缓冲区空间的读取
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                collector.abort();
+            }
+        });
+        try {
+            if (sessionShell != null) {
+                runInSession(command, timeoutMs, collector, future);
+            } else {
+                runInProcess(command, timeoutMs, collector, future);
+            }
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } finally {
+            future.release();
+            record(command, future);
+        }
+    }
+
+    private void runBinary(String command, long timeoutMs, ChunkListener consumer, CommandFuture future) {
+        if (future.isDone()) {
+            record(command, future);
+            return;
+        }
+        future.markStarted();
+        Process process = null;
+        try {
+            process = new ProcessBuilder("sh", "-c", wrapWithPid(command)).start();
+            future.markForked();
+            if (!future.attach(process)) {
+                return;
+            }
+            scheduleTimeout(command, future, timeoutMs);
+            process.getOutputStream().close();
+
+            // 标准错误单独读取，避免管道写满阻塞命令
+            InputStream stderr = process.getErrorStream();
+            CompletableFuture<OutputCollector> errors = CompletableFuture.supplyAsync(() -> {
+                OutputCollector collector = new OutputCollector(null);
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(stderr, StandardCharsets.UTF_8))) {
+                    String line = readPid(reader, future, collector);
+                    while (line != null && (line = reader.readLine()) != null) {
+                        collector.onOutputLine(line);
+                    }
+                } catch (IOException ignored) {
+                    // 进程被结束时流会被关闭
+                }
+                return collector;
+            }, stderrReaders);
+
+            // 同一块缓冲区反复使用，数据直接交给消费者，不经过字符串
+            byte[] bytes = new byte[CHUNK_SIZE];
+            ByteBuffer chunk = ByteBuffer.wrap(bytes);
+            long total = 0;
+            try (InputStream stdout = process.getInputStream()) {
+                int read;
+                while ((read = stdout.read(bytes)) != -1) {
+                    chunk.clear();
+                    chunk.limit(read);
+                    consumer.onChunk(chunk);
+                    total += read;
+                    future.setBytesOut(total);
+                }
+            }
+            int exitCode = process.waitFor();
+            OutputCollector collector = errors.get();
+            future.complete(new CommandResult(command, exitCode, collector.lines, collector.truncated, total));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        } catch (ExecutionException e) {
+            future.completeExceptionally(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } finally {
+            future.release();
+            if (process != null) {
+                process.destroy();
+            }
+            record(command, future);
+        }
+    }
+
+    private void runInProcess(String command, long timeoutMs, OutputCollector collector, CommandFuture future)
+            throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("sh", "-c", wrapWithPid(command)).redirectErrorStream(true).start();
+        future.markForked();
+        try {
+            if (!future.attach(process)) {
+                return;
+            }
+            scheduleTimeout(command, future, timeoutMs);
+            process.getOutputStream().close();
+            CountingInputStream stdout = new CountingInputStream(process.getInputStream());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stdout, StandardCharsets.UTF_8))) {
+                String line = readPid(reader, future, collector);
+                while (line != null && (line = reader.readLine()) != null) {
+                    collector.onOutputLine(line);
+                }
+            } finally {
+                future.setBytesOut(stdout.getCount());
+            }
+            int exitCode = process.waitFor();
+            // 已超时或被取消时 complete 不会生效
+            future.complete(collector.finish(command, exitCode));
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private void runInSession(String command, long timeoutMs, OutputCollector collector, CommandFuture future)
+            throws IOException, InterruptedException {
+        ShellSession session = acquireSession();
+        boolean reusable = false;
+        try {
+            if (!future.attach(session.getProcess())) {
+                // 命令在启动前已被取消，会话没有被用过
+                reusable = true;
+                return;
+            }
+            scheduleTimeout(command, future, timeoutMs);
+            long bytesBefore = session.getBytesRead();
+            int exitCode;
+            try {
+                exitCode = session.run(command, collector, pid -> future.attachPid(pid, sessionShell));
+            } finally {
+                future.setBytesOut(session.getBytesRead() - bytesBefore);
+            }
+            // 先完成再归还：complete 成功后取消不会再结束这个会话，失败说明会话已被超时或取消结束
+            reusable = future.complete(collector.finish(command, exitCode));
+        } finally {
+            if (reusable) {
+                releaseSession(session);
+            } else {
+                session.close();
+            }
+        }
+    }
+
+    // 单独启动的命令先在标准错误输出 shell 的 pid，用于结束整个进程树；命令本身通过 eval 执行
+    private static String wrapWithPid(String command) {
+        return "echo $$ >&2; eval " + ShellSession.quote(command);
+    }
+
+    // 读取 wrapWithPid 输出的第一行；不是 pid 时按普通输出处理。流已结束时返回 null
+    private static String readPid(BufferedReader reader, CommandFuture future, OutputListener collector)
+            throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        try {
+            future.attachPid(Integer.parseInt(line.trim()), "sh");
+        } catch (NumberFormatException e) {
+            collector.onOutputLine(line);
+        }
+        return line;
+    }
+
+    private void scheduleTimeout(String command, CommandFuture future, long timeoutMs) {
+        if (timeoutMs > NO_TIMEOUT) {
+            future.setTimeout(watchdog.schedule(() -> {
+                if (future.timeOut(timeoutMs)) {
+                    Log.w(TAG, "Killed command after " + timeoutMs + " ms: " + command);
+                }
+            }, timeoutMs, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    // 命令结束后记录各阶段耗时；没有到达的阶段记为 0
+    private void record(String command, CommandFuture future) {
+        long now = System.nanoTime();
+        ShellStats.Status status;
+        int exitCode = -1;
+        if (!future.isDone()) {
+            status = ShellStats.Status.FAILED;
+        } else {
+            try {
+                exitCode = future.getNow(null).getExitCode();
+                status = ShellStats.Status.COMPLETED;
+            } catch (CancellationException e) {
+                status = ShellStats.Status.CANCELLED;
+            } catch (CompletionException e) {
+                status = e.getCause() instanceof TimeoutException
+                        ? ShellStats.Status.TIMED_OUT : ShellStats.Status.FAILED;
+            }
+        }
+        long startedAt = future.startedAt;
+        long forkedAt = future.forkedAt;
+        long queueWait = (startedAt != 0 ? startedAt : now) - future.queuedAt;
+        long fork = startedAt == 0 ? 0 : (forkedAt != 0 ? forkedAt : now) - startedAt;
+        long run = forkedAt == 0 ? 0 : now - forkedAt;
+        ShellStats.Record record = new ShellStats.Record(command, status, exitCode,
+                TimeUnit.NANOSECONDS.toMillis(queueWait), TimeUnit.NANOSECONDS.toMillis(fork),
+                TimeUnit.NANOSECONDS.toMillis(run), future.bytesOut, System.currentTimeMillis());
+        stats.add(record);
+        future.record.complete(record);
+    }
+
+    private ShellSession acquireSession() throws IOException {
+        synchronized (idleSessions) {
+            ShellSession session;
+            while ((session = idleSessions.pollFirst()) != null) {
+                if (session.isAlive()) {
+                    return session;
+                }
+                session.close();
+            }
+        }
+        return new ShellSession(sessionShell);
+    }
+
+    private void releaseSession(ShellSession session) {
+        synchronized (idleSessions) {
+            if (!workers.isShutdown()) {
+                idleSessions.offerFirst(session);
+                return;
+            }
+        }
+        session.close();
+    }
+
+    // 从最久未用的一端关闭空闲过久或已退出的会话
+    private void closeIdleSessions() {
+        long now = System.currentTimeMillis();
+        synchronized (idleSessions) {
+            Iterator<ShellSession> iterator = idleSessions.descendingIterator();
+            while (iterator.hasNext()) {
+                ShellSession session = iterator.next();
+                if (!session.isAlive() || now - session.getLastUsedAt() >= SESSION_IDLE_MS) {
+                    session.close();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        watchdog.shutdownNow();
+        stderrReaders.shutdownNow();
+        synchronized (idleSessions) {
+            for (ShellSession session : idleSessions) {
+                session.close();
+            }
+            idleSessions.clear();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.treelang.mean.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+/**
+ * One long-lived {@code sh} (or {@code su}) process that runs commands one after another over its
+ * stdin, so a command costs a write and a read instead of spawning a new process from the app.
+ * <p>
+ * Each command runs as a background job of the session shell, which echoes a sentinel line with
+ * the job's pid when it starts and another with its exit code when it ends. The sentinels contain a
+ * random per-session token and a sequence number, so command output cannot be mistaken for them.
+ * Not thread-safe: a session runs one command at a time.
+ */
+class ShellSession {
+    private final Process process;
+    private final Writer stdin;
+    private final ShellExecutor.CountingInputStream counter;
+    private final BufferedReader stdout;
+    private final String markerPrefix;
+    private long sequence;
+    private long lastUsedAt;
+
+    ShellSession(String shell) throws IOException {
+        process = new ProcessBuilder(shell).redirectErrorStream(true).start();
+        stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        counter = new ShellExecutor.CountingInputStream(process.getInputStream());
+        stdout = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8));
+        markerPrefix = "__mean_end_" + UUID.randomUUID().toString().replace("-", "") + "_";
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    Process getProcess() {
+        return process;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    // 会话创建以来从 shell 读取的字节数，包括标记行
+    long getBytesRead() {
+        return counter.getCount();
+    }
+
+    /**
+     * Runs {@code command} and returns its exit code. Output lines are passed to {@code sink} as
+     * they are read and {@code onStarted} receives the pid of the command's job once it has been
+     * forked. Throws if the session died, after which it must not be reused.
+     */
+    int run(String command, ShellExecutor.OutputListener sink, IntConsumer onStarted) throws IOException {
+        String marker = markerPrefix + (++sequence) + " ";
+        // 作为后台作业 eval：在子 shell 中执行，cd、exit 等不会影响会话本身，语法错误也不会吞掉后面的标记行；
+        // $! 是作业的 pid，超时时可以直接结束命令；命令的标准输入指向 /dev/null，避免读走会话后续的输入
+        stdin.write("eval " + quote(command) + " </dev/null 2>&1 & echo \"" + marker + "pid $!\"; wait $!; echo \""
+                + marker + "$?\"\n");
+        stdin.flush();
+
+        String line;
+        while ((line = stdout.readLine()) != null) {
+            int index = line.indexOf(marker);
+            if (index < 0) {
+                sink.onOutputLine(line);
+                continue;
+            }
+            // 命令输出末尾没有换行时，标记会接在最后一行后面
+            if (index > 0) {
+                sink.onOutputLine(line.substring(0, index));
+            }
+            String value = line.substring(index + marker.length()).trim();
+            try {
+                if (value.startsWith("pid ")) {
+                    // pid 行与命令输出并发写入，可能出现在输出之间
+                    onStarted.accept(Integer.parseInt(value.substring(4).trim()));
+                    continue;
+                }
+                lastUsedAt = System.currentTimeMillis();
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed marker: " + line);
+            }
+        }
+        throw new IOException("Shell session ended unexpectedly");
+    }
+
+    void close() {
+        try {
+            stdin.write("exit\n");
+            stdin.flush();
+        } catch (IOException ignored) {
+            // 进程已经退出
+        }
+        process.destroy();
+    }
+
+    // 用单引号包裹，内部的单引号写成 '\''
+    static String quote(String command) {
+        return "'" + command.replace("'", "'\\''") + "'";
+    }
+}
@@ -0,0 +1,211 @@
+package com.treelang.mean.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-command resource accounting of a {@link ShellExecutor}: how long each command waited for a
+ * worker, how long it took to get a process, how long it ran, how much output it produced and how
+ * it ended.
+ * <p>
+ * The most recent commands are kept individually, totals cover every command since the executor
+ * was created. All queries return snapshots and are safe to call from any thread.
+ */
+public class ShellStats {
+    // 保留的最近命令记录数
+    private static final int MAX_RECORDS = 200;
+    // 日志中命令文本的最大长度
+    private static final int MAX_COMMAND_LENGTH = 80;
+
+    public enum Status {
+        COMPLETED,
+        TIMED_OUT,
+        CANCELLED,
+        FAILED
+    }
+
+    /**
+     * Metrics of one command. Times are in milliseconds; stages the command never reached are 0.
+     */
+    public static class Record {
+        public final String command;
+        public final Status status;
+        // 未正常结束的命令为 -1
+        public final int exitCode;
+        // 等待空闲工作线程的时间
+        public final long queueWaitMs;
+        // 启动进程或取得会话并启动命令的时间
+        public final long forkMs;
+        // 从命令启动到结束的时间
+        public final long runMs;
+        // 从 shell 读取的输出字节数
+        public final long bytesOut;
+        public final long finishedAt;
+
+        Record(String command, Status status, int exitCode, long queueWaitMs, long forkMs, long runMs,
+               long bytesOut, long finishedAt) {
+            this.command = command;
+            this.status = status;
+            this.exitCode = exitCode;
+            this.queueWaitMs = queueWaitMs;
+            this.forkMs = forkMs;
+            this.runMs = runMs;
+            this.bytesOut = bytesOut;
+            this.finishedAt = finishedAt;
+        }
+
+        public long getTotalMs() {
+            return queueWaitMs + forkMs + runMs;
+        }
+
+        @Override
+        public String toString() {
+            String shown = command.replace('\n', ';');
+            if (shown.length() > MAX_COMMAND_LENGTH) {
+                shown = shown.substring(0, MAX_COMMAND_LENGTH) + "…";
+            }
+            return String.format(Locale.US, "%s exit=%d queue=%dms fork=%dms run=%dms out=%dB: %s",
+                    status, exitCode, queueWaitMs, forkMs, runMs, bytesOut, shown);
+        }
+    }
+
+    /**
+     * Totals over every command recorded so far.
+     */
+    public static class Summary {
+        public final int count;
+        public final int completed;
+        // 正常结束但退出码非 0 的命令
+        public final int nonZeroExit;
+        public final int timedOut;
+        public final int cancelled;
+        public final int failed;
+        public final long totalQueueWaitMs;
+        public final long totalForkMs;
+        public final long totalRunMs;
+        public final long maxQueueWaitMs;
+        public final long maxRunMs;
+        public final long totalBytesOut;
+
+        Summary(int count, int completed, int nonZeroExit, int timedOut, int cancelled, int failed,
+                long totalQueueWaitMs, long totalForkMs, long totalRunMs, long maxQueueWaitMs, long maxRunMs,
+                long totalBytesOut) {
+            this.count = count;
+            this.completed = completed;
+            this.nonZeroExit = nonZeroExit;
+            this.timedOut = timedOut;
+            this.cancelled = cancelled;
+            this.failed = failed;
+            this.totalQueueWaitMs = totalQueueWaitMs;
+            this.totalForkMs = totalForkMs;
+            this.totalRunMs = totalRunMs;
+            this.maxQueueWaitMs = maxQueueWaitMs;
+            this.maxRunMs = maxRunMs;
+            this.totalBytesOut = totalBytesOut;
+        }
+
+        public long getAverageQueueWaitMs() {
+            return count == 0 ? 0 : totalQueueWaitMs / count;
+        }
+
+        public long getAverageForkMs() {
+            return count == 0 ? 0 : totalForkMs / count;
+        }
+
+        public long getAverageRunMs() {
+            return count == 0 ? 0 : totalRunMs / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d commands (%d ok, %d non-zero, %d timed out, %d cancelled, %d failed), "
+                            + "avg queue=%dms fork=%dms run=%dms, max queue=%dms run=%dms, out=%dB",
+                    count, completed - nonZeroExit, nonZeroExit, timedOut, cancelled, failed,
+                    getAverageQueueWaitMs(), getAverageForkMs(), getAverageRunMs(), maxQueueWaitMs, maxRunMs,
+                    totalBytesOut);
+        }
+    }
+
+    private final ArrayDeque<Record> recent = new ArrayDeque<>();
+    private int count;
+    private int completed;
+    private int nonZeroExit;
+    private int timedOut;
+    private int cancelled;
+    private int failed;
+    private long totalQueueWaitMs;
+    private long totalForkMs;
+    private long totalRunMs;
+    private long maxQueueWaitMs;
+    private long maxRunMs;
+    private long totalBytesOut;
+
+    synchronized void add(Record record) {
+        if (recent.size() >= MAX_RECORDS) {
+            recent.pollFirst();
+        }
+        recent.addLast(record);
+
+        count++;
+        switch (record.status) {
+            case COMPLETED:
+                completed++;
+                if (record.exitCode != 0) {
+                    nonZeroExit++;
+                }
+                break;
+            case TIMED_OUT:
+                timedOut++;
+                break;
+            case CANCELLED:
+                cancelled++;
+                break;
+            default:
+                failed++;
+                break;
+        }
+        totalQueueWaitMs += record.queueWaitMs;
+        totalForkMs += record.forkMs;
+        totalRunMs += record.runMs;
+        maxQueueWaitMs = Math.max(maxQueueWaitMs, record.queueWaitMs);
+        maxRunMs = Math.max(maxRunMs, record.runMs);
+        totalBytesOut += record.bytesOut;
+    }
+
+    public synchronized Summary getSummary() {
+        return new Summary(count, completed, nonZeroExit, timedOut, cancelled, failed, totalQueueWaitMs,
+                totalForkMs, totalRunMs, maxQueueWaitMs, maxRunMs, totalBytesOut);
+    }
+
+    // 最近的命令，最早结束的在前
+    public synchronized List<Record> getRecent() {
+        return new ArrayList<>(recent);
+    }
+
+    // 最近的命令中总耗时最长的 limit 条
+    public List<Record> getSlowest(int limit) {
+        List<Record> records = getRecent();
+        records.sort(Comparator.comparingLong(Record::getTotalMs).reversed());
+        return records.subList(0, Math.min(limit, records.size()));
+    }
+
+    public synchronized void reset() {
+        recent.clear();
+        count = 0;
+        completed = 0;
+        nonZeroExit = 0;
+        timedOut = 0;
+        cancelled = 0;
+        failed = 0;
+        totalQueueWaitMs = 0;
+        totalForkMs = 0;
+        totalRunMs = 0;
+        maxQueueWaitMs = 0;
+        maxRunMs = 0;
+        totalBytesOut = 0;
+    }
+}
@@ -2,9 +2,10 @@ package com.treelang.mean.viewmodels;
 
 import android.app.Application;
 import android.content.Context;
-import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -13,21 +14,55 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import com.treelang.mean.data.AppInfo;
-import com.treelang.mean.utils.AppUtils;
+import com.treelang.mean.receivers.PackageChangeReceiver;
+import com.treelang.mean.utils.AppLoader;
+import com.treelang.mean.utils.AppStateResolver;
+import com.treelang.mean.utils.IconCache;
+import com.treelang.mean.utils.InventorySnapshot;
+import com.treelang.mean.utils.PackageDetails;
+import com.treelang.mean.utils.PackageQueryMeasurement;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class MainViewModel extends AndroidViewModel {
 
-    //注意这里的列表
-    private final MutableLiveData<List<AppInfo>> userApps = new MutableLiveData<>(); //
-    private final MutableLiveData<List<AppInfo>> systemApps = new MutableLiveData<>();
-    private final MutableLiveData<List<AppInfo>> privilegeApps = new MutableLiveData<>();
-    private final MutableLiveData<List<AppInfo>> coreApps = new MutableLiveData<>();
+    //当前显示的应用清单，各标签页的列表都是它的分类投影
+    private volatile AppLoader.Result inventory;
 
     private final Context context;
 
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 等待 shell 状态查询的最长时间
+    private static final long SHELL_STATES_TIMEOUT_MS = 2000;
+
+    // 串行执行加载任务，避免多次刷新同时进行
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+
+    // 单个应用详情查询，不排在列表加载之后
+    private final ExecutorService detailExecutor = Executors.newSingleThreadExecutor();
+
+    // 磁盘上的应用列表快照，只在加载线程中读写
+    private final InventorySnapshot snapshot;
+    private boolean snapshotRestored = false;
+
+    // 最近一次发布的分类结果，包变化时在它的基础上增量更新，只在加载线程中访问
+    private AppLoader.Result currentResult;
+
+    // 监听应用安装、卸载、启用/禁用，变化的包名先合并，再在加载线程中统一处理
+    private final PackageChangeReceiver packageChangeReceiver = new PackageChangeReceiver(this::onPackageChanged);
+    private final Set<String> pendingChangedPackages = new HashSet<>();
+
     //当前显示的具体是哪个类型的数据
     private final MutableLiveData<List<AppInfo>> currentShowApps = new MutableLiveData<>();
 
@@ -37,6 +72,10 @@ public class MainViewModel extends AndroidViewModel {
     private final MutableLiveData<Integer> loadingProgress = new MutableLiveData<>(0);
     private final MutableLiveData<String> loadingStatus = new MutableLiveData<>("");
 
+    // 第二阶段加载（图标、大小等）完成的通知
+    private final MutableLiveData<Boolean> enrichedSignal = new MutableLiveData<>();
+    private final Set<String> pendingEnrichedPackages = new HashSet<>();
+
     private int selectedTabPosition = 0;
     private int pendingTabPosition = -1; // 存储加载过程中请求的Tab位置
 
@@ -46,6 +85,8 @@ public class MainViewModel extends AndroidViewModel {
     public MainViewModel(@NonNull Application application) {
         super(application);
         context = application.getApplicationContext();
+        snapshot = new InventorySnapshot(context);
+        packageChangeReceiver.register(context);
         loadApps();
     }
 
@@ -65,95 +106,69 @@ public class MainViewModel extends AndroidViewModel {
         loadingProgress.postValue(0);
         loadingStatus.postValue("正在加载应用列表...");
         
-        new Thread(() -> {
+        loadExecutor.execute(() -> {
             try {
-                // 只获取一次所有应用包信息
+                // 冷启动时先显示磁盘快照中的列表，再去 PackageManager 查询变化
+                if (!snapshotRestored) {
+                    snapshotRestored = true;
+                    snapshot.read();
+                    if (!snapshot.isEmpty()) {
+                        publishApps(AppLoader.restore(snapshot));
+                    }
+                }
+
+                // 禁用、卸载状态通过一次 shell 查询获取，与包列表加载同时进行
+                CompletableFuture<AppStateResolver.ShellStates> shellStates = AppStateResolver.queryShellStatesAsync();
+
+                // 只获取一次所有应用包信息，列表不需要权限、签名等数据，详情页单独查询
+                // 包含为当前用户卸载但保留数据的应用，显示为已卸载
                 PackageManager pm = context.getPackageManager();
                 List<PackageInfo> allPackages = pm.getInstalledPackages(
-                    PackageManager.GET_META_DATA | 
-                    PackageManager.GET_PERMISSIONS | 
-                    PackageManager.GET_SIGNING_CERTIFICATES);
+                    PackageDetails.queryFlagsFor(PackageDetails.LIST_FIELDS) | PackageManager.MATCH_UNINSTALLED_PACKAGES);
                 
                 int totalApps = allPackages.size();
                 loadingStatus.postValue("共发现 " + totalApps + " 个应用，正在处理...");
                 
-                // 分类应用
-                List<AppInfo> userAppList;
-                List<AppInfo> systemAppList;
-                List<AppInfo> privilegeAppList;
-                List<AppInfo> coreAppList;
-                
-                // 预计算应用列表大小以减少动态扩容
-                int initialCapacity = Math.max(50, allPackages.size() / 4);
-                userAppList = new ArrayList<>(initialCapacity);
-                systemAppList = new ArrayList<>(initialCapacity);
-                privilegeAppList = new ArrayList<>(initialCapacity);
-                coreAppList = new ArrayList<>(initialCapacity);
-                
-                // 单次遍历所有包信息进行分类
-                int processedCount = 0;
-                for (PackageInfo packageInfo : allPackages) {
-                    AppInfo appInfo = AppUtils.getAppInfoFromPackageInfo(pm, packageInfo);
-                    if (appInfo == null) continue;
-                    
-                    // 更新进度
-                    processedCount++;
-                    if (processedCount % 10 == 0 || processedCount == totalApps) {
-                        int progress = (int)(((float)processedCount / totalApps) * 100);
-                        loadingProgress.postValue(progress);
-                        loadingStatus.postValue("处理中: " + processedCount + "/" + totalApps);
-                    }
-                    
-                    // 用户应用
-                    // 简化用户应用判断：只要不是系统应用标志位的，就认为是用户应用
-                    boolean isUserApp = (packageInfo.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) == 0;
+                // 分块并行转换并分类，结果按原始顺序合并；快照中未变化的包直接复用
+                AppLoader.Result result = AppLoader.load(pm, allPackages, snapshot, (processed, total) -> {
+                    int progress = (int)(((float)processed / total) * 100);
+                    loadingProgress.postValue(progress);
+                    loadingStatus.postValue("处理中: " + processed + "/" + total);
+                });
+                loadingStatus.postValue("数据整理中...");
 
-                    if (isUserApp) {
-                        userAppList.add(appInfo);
+                // 合并 shell 查询到的状态，超时则只使用包信息中的状态
+                try {
+                    AppStateResolver.ShellStates states = shellStates.get(SHELL_STATES_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (states != null) {
+                        AppStateResolver.merge(result.getAllApps(), states);
                     }
-                    
-                    // 各类应用可能会重叠，一个应用可能同时属于多个类别
-                    if (appInfo.isSystemApp()) {
-                        systemAppList.add(appInfo);
-                    }
-                    
-                    if (appInfo.isPrivilegedApp()) {
-                        privilegeAppList.add(appInfo);
-                    }
-                    
-                    if (appInfo.isCoreApp()) {
-                        coreAppList.add(appInfo);
-                    }
-                }
-                
-                loadingStatus.postValue("数据整理中...");
-                
-                // 更新LiveData
-                userApps.postValue(userAppList);
-                systemApps.postValue(systemAppList);
-                privilegeApps.postValue(privilegeAppList);
-                coreApps.postValue(coreAppList);
-                
-                // 检查是否有待处理的Tab位置
-                if (pendingTabPosition != -1) {
-                    // 使用待处理的Tab位置
-                    selectedTabPosition = pendingTabPosition;
-                    pendingTabPosition = -1;
+                } catch (TimeoutException | ExecutionException e) {
+                    Log.w("MainViewModel", "Package state query failed: " + e);
                 }
-                
-                // 根据当前选中的Tab位置更新显示列表
-                List<AppInfo> appsToShow = switch (selectedTabPosition) {
-                    case 0 -> userAppList;
-                    case 1 -> systemAppList;
-                    case 2 -> privilegeAppList;
-                    case 3 -> coreAppList;
-                    default -> new ArrayList<>();
-                };
-                
-                currentShowApps.postValue(appsToShow);
+
+                // 第一阶段完成即结束加载状态，列表先显示出来
+                isLoading = false;
+                publishApps(result);
                 
                 loadingProgress.postValue(100);
+                loadingStatus.postValue("正在加载应用信息...");
+
+                // 第二阶段：后台补充名称、安装来源和大小，每完成一块就通知界面局部刷新；图标在显示时按需加载
+                AppLoader.enrich(pm, allPackages, result, this::onAppsEnriched);
+                // 补充的信息在主线程中写入，全部写入后再保存快照
+                awaitMainThread();
+
+                // 保存快照，下次启动时未变化的包无需重新解析
+                snapshot.update(allPackages, result.getAppsInPackageOrder());
+                snapshot.write();
+                currentResult = result;
                 loadingStatus.postValue("加载完成");
+
+                // 开发者开启时记录精简查询与完整查询的耗时和内存对比；在单独的线程中执行，不阻塞包变化的处理
+                if (PackageQueryMeasurement.isEnabled(context)) {
+                    new Thread(() -> PackageQueryMeasurement.measureOnce(context), "package-query-measurement").start();
+                }
             } catch (Exception e) {
                 Log.e("MainViewModel", "Error loading apps: " + e.getMessage());
                 // 发送空列表避免UI等待
@@ -162,7 +177,105 @@ public class MainViewModel extends AndroidViewModel {
             } finally {
                 isLoading = false;
             }
-        }).start();
+        });
+    }
+
+    // 收到包变化广播，合并到待处理集合中；批量操作时多个广播只会触发一次更新
+    private void onPackageChanged(String packageName) {
+        // 更新后的图标可能不同，先丢弃内存中的旧图标，列表刷新时重新加载
+        IconCache.getInstance(context).remove(packageName);
+        boolean scheduled;
+        synchronized (pendingChangedPackages) {
+            scheduled = !pendingChangedPackages.isEmpty();
+            pendingChangedPackages.add(packageName);
+        }
+        if (!scheduled) {
+            loadExecutor.execute(this::applyPackageChanges);
+        }
+    }
+
+    // 只重新解析发生变化的包，并替换到现有的分类列表中
+    private void applyPackageChanges() {
+        Set<String> changed;
+        synchronized (pendingChangedPackages) {
+            changed = new HashSet<>(pendingChangedPackages);
+            pendingChangedPackages.clear();
+        }
+        // 加载任务也在同一线程中执行，这里为空说明完整加载失败，没有可更新的列表
+        if (currentResult == null || changed.isEmpty()) {
+            return;
+        }
+        try {
+            currentResult = AppLoader.update(context.getPackageManager(), currentResult, changed, snapshot);
+            publishApps(currentResult);
+            // 变化的包已写入快照，下次冷启动直接显示最新状态
+            snapshot.write();
+        } catch (Exception e) {
+            Log.e("MainViewModel", "Error updating apps: " + e.getMessage());
+        }
+    }
+
+    // 发布分类后的列表，并按当前选中的Tab更新显示列表
+    private void publishApps(AppLoader.Result result) {
+        inventory = result;
+
+        // 检查是否有待处理的Tab位置
+        if (pendingTabPosition != -1) {
+            // 使用待处理的Tab位置
+            selectedTabPosition = pendingTabPosition;
+            pendingTabPosition = -1;
+        }
+
+        // 根据当前选中的Tab位置更新显示列表
+        currentShowApps.postValue(result.getApps(selectedTabPosition));
+    }
+
+    // 在工作线程中回调；补充的信息交给主线程一次写入，界面只在主线程中读取应用信息
+    private void onAppsEnriched(List<AppLoader.Enrichment> enrichments) {
+        mainHandler.post(() -> {
+            synchronized (pendingEnrichedPackages) {
+                for (AppLoader.Enrichment enrichment : enrichments) {
+                    enrichment.apply();
+                    pendingEnrichedPackages.add(enrichment.getPackageName());
+                }
+            }
+            enrichedSignal.setValue(true);
+        });
+    }
+
+    // 等待主线程处理完此前提交的任务
+    private void awaitMainThread() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        mainHandler.post(latch::countDown);
+        latch.await();
+    }
+
+    // 有应用信息补充完成时收到通知，随后调用 consumeEnrichedPackages 获取包名
+    public LiveData<Boolean> getEnrichedSignal() {
+        return enrichedSignal;
+    }
+
+    // 取走并清空已补充完成的包名
+    public Set<String> consumeEnrichedPackages() {
+        synchronized (pendingEnrichedPackages) {
+            Set<String> packages = new HashSet<>(pendingEnrichedPackages);
+            pendingEnrichedPackages.clear();
+            return packages;
+        }
+    }
+
+    // 按需查询单个应用的权限、签名等详细信息，查询失败时返回 null
+    public LiveData<PackageDetails> loadPackageDetails(String packageName) {
+        MutableLiveData<PackageDetails> details = new MutableLiveData<>();
+        detailExecutor.execute(() -> {
+            try {
+                details.postValue(PackageDetails.load(context.getPackageManager(), packageName));
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w("MainViewModel", "Package not found: " + packageName);
+                details.postValue(null);
+            }
+        });
+        return details;
     }
 
     //添加一个方法，更新currentShowApps的值,
@@ -174,14 +287,9 @@ public class MainViewModel extends AndroidViewModel {
         }
         
         selectedTabPosition = position;
-        List<AppInfo> filteredApps = switch (position) {
-            case 0 -> filterApps(userApps.getValue());
-            case 1 -> filterApps(systemApps.getValue());
-            case 2 -> filterApps(privilegeApps.getValue());
-            case 3 -> filterApps(coreApps.getValue());
-            default -> new ArrayList<>();
-        };
-        currentShowApps.setValue(filteredApps);
+        // 分类投影已缓存，切换标签页不需要复制列表
+        AppLoader.Result current = inventory;
+        currentShowApps.setValue(current != null ? filterApps(current.getApps(position)) : new ArrayList<>());
     }
     //获取当前的应用
     public LiveData<List<AppInfo>> getCurrentShowApps(){
@@ -222,4 +330,12 @@ public class MainViewModel extends AndroidViewModel {
     public void setCurrentSortPosition(int position) {
         this.currentSortPosition = position;
     }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        packageChangeReceiver.unregister(context);
+        loadExecutor.shutdownNow();
+        detailExecutor.shutdownNow();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.treelang.mean.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.content.pm.ApplicationInfo;
+
+import org.junit.Test;
+
+/**
+ * Exercises the classification rules with plain flags and paths. {@link ApplicationInfo#FLAG_SYSTEM}
+ * is a compile-time constant, so no Android runtime is needed.
+ */
+public class AppClassifierTest {
+
+    private static final int SYSTEM = ApplicationInfo.FLAG_SYSTEM;
+    private static final int NONE = 0;
+
+    private static void assertCategory(AppClassifier.Category expected, int flags, String sourceDir,
+                                       Boolean privilegedFlag) {
+        assertEquals(sourceDir + " privileged=" + privilegedFlag, expected,
+                AppClassifier.classify(flags, sourceDir, privilegedFlag));
+    }
+
+    @Test
+    public void coreWinsOverPrivileged() {
+        // system 分区 app 目录下的应用即使带有特权标志也是核心应用
+        assertCategory(AppClassifier.Category.CORE, SYSTEM, "/system/app/Bluetooth/Bluetooth.apk", true);
+        assertCategory(AppClassifier.Category.CORE, SYSTEM, "/system/app/Bluetooth/Bluetooth.apk", false);
+        assertCategory(AppClassifier.Category.CORE, SYSTEM, "/system/system_app/Foo/Foo.apk", false);
+    }
+
+    @Test
+    public void privilegedWinsOverSystem() {
+        assertCategory(AppClassifier.Category.PRIVILEGED, SYSTEM, "/system/priv-app/Settings/Settings.apk", true);
+        assertCategory(AppClassifier.Category.PRIVILEGED, SYSTEM, "/product/priv-app/Launcher/Launcher.apk", true);
+        assertCategory(AppClassifier.Category.PRIVILEGED, SYSTEM, "/system_ext/priv-app/SystemUI/SystemUI.apk", true);
+    }
+
+    @Test
+    public void systemWinsOverUser() {
+        assertCategory(AppClassifier.Category.SYSTEM, SYSTEM, "/product/app/Gallery/Gallery.apk", false);
+        assertCategory(AppClassifier.Category.SYSTEM, SYSTEM, "/vendor/app/Ims/Ims.apk", null);
+        // data-app 目录下的预装应用没有系统标志，仍归为系统应用
+        assertCategory(AppClassifier.Category.SYSTEM, NONE, "/product/data-app/Preload/Preload.apk", null);
+    }
+
+    @Test
+    public void classifiesUserApps() {
+        assertCategory(AppClassifier.Category.USER, NONE, "/data/app/~~Xk2b9w==/com.example.app-Qw3rTy==/base.apk", null);
+        // 更新过的系统应用安装在 data 分区
+        assertCategory(AppClassifier.Category.USER, SYSTEM, "/data/app/~~Xk2b9w==/com.android.chrome-Qw3rTy==/base.apk", true);
+        assertCategory(AppClassifier.Category.USER, NONE, "/system/app/Bluetooth/Bluetooth.apk", null);
+        assertCategory(AppClassifier.Category.USER, SYSTEM, "/mnt/expand/uuid/app/Foo/base.apk", true);
+        assertCategory(AppClassifier.Category.USER, SYSTEM, null, true);
+    }
+
+    @Test
+    public void clearedPrivilegedFlagIsNotPrivileged() {
+        assertCategory(AppClassifier.Category.USER, SYSTEM, "/system/priv-app/Settings/Settings.apk", false);
+    }
+
+    @Test
+    public void unknownPrivilegedFlagFallsBackToDirectory() {
+        assertCategory(AppClassifier.Category.PRIVILEGED, SYSTEM, "/system/priv-app/Settings/Settings.apk", null);
+        assertCategory(AppClassifier.Category.PRIVILEGED, SYSTEM, "/system/product/priv-app/Launcher/Launcher.apk", null);
+        assertCategory(AppClassifier.Category.CORE, SYSTEM, "/system/app/Bluetooth/Bluetooth.apk", null);
+        assertCategory(AppClassifier.Category.SYSTEM, SYSTEM, "/product/app/Gallery/Gallery.apk", null);
+    }
+
+    @Test
+    public void reflectiveReaderReportsUnknownWithoutHiddenField() {
+        // 测试使用的 android.jar 不包含隐藏字段，与隐藏 API 被限制时的情况相同
+        assertNull(new AppClassifier.ReflectivePrivilegedFlagReader().hasPrivilegedFlag(null));
+    }
+
+    @Test
+    public void classifiesOdmApps() {
+        assertCategory(AppClassifier.Category.SYSTEM, SYSTEM, "/odm/app/Camera/Camera.apk", null);
+        assertCategory(AppClassifier.Category.PRIVILEGED, SYSTEM, "/odm/priv-app/Dolby/Dolby.apk", true);
+        assertCategory(AppClassifier.Category.PRIVILEGED, SYSTEM, "/system/odm/priv-app/Dolby/Dolby.apk", null);
+        assertCategory(AppClassifier.Category.SYSTEM, NONE, "/odm/data-app/Preload/Preload.apk", null);
+    }
+
+    @Test
+    public void classifiesApexApps() {
+        assertCategory(AppClassifier.Category.PRIVILEGED, SYSTEM,
+                "/apex/com.android.permission/priv-app/PermissionController/PermissionController.apk", true);
+        assertCategory(AppClassifier.Category.PRIVILEGED, SYSTEM,
+                "/apex/com.android.permission/priv-app/PermissionController/PermissionController.apk", null);
+        assertCategory(AppClassifier.Category.SYSTEM, SYSTEM,
+                "/apex/com.android.cellbroadcast@340090000/app/CellBroadcastApp/CellBroadcastApp.apk", false);
+    }
+
+    @Test
+    public void classifiesCustomLocations() {
+        PartitionMatcher.Location location =
+                new PartitionMatcher.Location(PartitionMatcher.Partition.VENDOR, PartitionMatcher.DirKind.OTHER);
+        assertEquals(AppClassifier.Category.USER, AppClassifier.classify(SYSTEM, location, true));
+        assertEquals(AppClassifier.Category.USER,
+                AppClassifier.classify(SYSTEM, PartitionMatcher.Location.UNKNOWN, null));
+    }
+}
@@ -0,0 +1,119 @@
+package com.treelang.mean.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Matches real-world {@code sourceDir} values against the default partition layout.
+ */
+public class PartitionMatcherTest {
+
+    private final PartitionMatcher matcher = PartitionMatcher.withDefaults();
+
+    private void assertLocation(String sourceDir, PartitionMatcher.Partition partition,
+                                PartitionMatcher.DirKind dirKind) {
+        PartitionMatcher.Location location = matcher.match(sourceDir);
+        assertEquals(sourceDir, partition, location.partition);
+        assertEquals(sourceDir, dirKind, location.dirKind);
+    }
+
+    @Test
+    public void matchesSystemDirectories() {
+        assertLocation("/system/app/Calculator/Calculator.apk",
+                PartitionMatcher.Partition.SYSTEM, PartitionMatcher.DirKind.APP);
+        assertLocation("/system/priv-app/Settings/Settings.apk",
+                PartitionMatcher.Partition.SYSTEM, PartitionMatcher.DirKind.PRIV_APP);
+        assertLocation("/system/system_app/Foo/Foo.apk",
+                PartitionMatcher.Partition.SYSTEM, PartitionMatcher.DirKind.APP);
+    }
+
+    @Test
+    public void matchesPartitionsMountedAtRootAndUnderSystem() {
+        assertLocation("/product/app/Gallery/Gallery.apk",
+                PartitionMatcher.Partition.PRODUCT, PartitionMatcher.DirKind.APP);
+        assertLocation("/system/product/priv-app/Launcher/Launcher.apk",
+                PartitionMatcher.Partition.PRODUCT, PartitionMatcher.DirKind.PRIV_APP);
+        assertLocation("/system_ext/priv-app/SystemUI/SystemUI.apk",
+                PartitionMatcher.Partition.SYSTEM_EXT, PartitionMatcher.DirKind.PRIV_APP);
+        assertLocation("/vendor/app/Ims/Ims.apk",
+                PartitionMatcher.Partition.VENDOR, PartitionMatcher.DirKind.APP);
+        assertLocation("/system/vendor/data-app/Preload/Preload.apk",
+                PartitionMatcher.Partition.VENDOR, PartitionMatcher.DirKind.DATA_APP);
+        assertLocation("/oem/app/Carrier/Carrier.apk",
+                PartitionMatcher.Partition.OEM, PartitionMatcher.DirKind.APP);
+    }
+
+    @Test
+    public void matchesOdm() {
+        assertLocation("/odm/app/Camera/Camera.apk",
+                PartitionMatcher.Partition.ODM, PartitionMatcher.DirKind.APP);
+        assertLocation("/odm/priv-app/Dolby/Dolby.apk",
+                PartitionMatcher.Partition.ODM, PartitionMatcher.DirKind.PRIV_APP);
+        assertLocation("/system/odm/data-app/Preload/Preload.apk",
+                PartitionMatcher.Partition.ODM, PartitionMatcher.DirKind.DATA_APP);
+    }
+
+    @Test
+    public void matchesAnyApexModule() {
+        assertLocation("/apex/com.android.permission/priv-app/PermissionController/PermissionController.apk",
+                PartitionMatcher.Partition.APEX, PartitionMatcher.DirKind.PRIV_APP);
+        assertLocation("/apex/com.android.cellbroadcast@340090000/app/CellBroadcastApp/CellBroadcastApp.apk",
+                PartitionMatcher.Partition.APEX, PartitionMatcher.DirKind.APP);
+        assertTrue(matcher.match("/apex/com.android.extservices/app/ExtServices/ExtServices.apk")
+                .isReadOnlyPartition());
+    }
+
+    @Test
+    public void matchesDataApps() {
+        PartitionMatcher.Location location =
+                matcher.match("/data/app/~~Xk2b9w==/com.example.app-Qw3rTy==/base.apk");
+        assertEquals(PartitionMatcher.Partition.DATA, location.partition);
+        assertEquals(PartitionMatcher.DirKind.APP, location.dirKind);
+        assertFalse(location.isReadOnlyPartition());
+    }
+
+    @Test
+    public void returnsUnknownForUnregisteredPaths() {
+        assertSame(PartitionMatcher.Location.UNKNOWN, matcher.match(null));
+        assertSame(PartitionMatcher.Location.UNKNOWN, matcher.match(""));
+        assertSame(PartitionMatcher.Location.UNKNOWN, matcher.match("system/app/Foo/Foo.apk"));
+        assertSame(PartitionMatcher.Location.UNKNOWN, matcher.match("/mnt/expand/uuid/app/Foo/base.apk"));
+        assertSame(PartitionMatcher.Location.UNKNOWN, matcher.match("/system/framework/framework-res.apk"));
+        // 前缀必须是完整的目录
+        assertSame(PartitionMatcher.Location.UNKNOWN, matcher.match("/system/app"));
+        assertSame(PartitionMatcher.Location.UNKNOWN, matcher.match("/system/apps/Foo/Foo.apk"));
+        assertFalse(PartitionMatcher.Location.UNKNOWN.isReadOnlyPartition());
+    }
+
+    @Test
+    public void longestPrefixWins() {
+        PartitionMatcher custom = new PartitionMatcher()
+                .register("/x/", PartitionMatcher.Partition.VENDOR, PartitionMatcher.DirKind.OTHER)
+                .register("/x/y/", PartitionMatcher.Partition.OEM, PartitionMatcher.DirKind.APP);
+        assertEquals(PartitionMatcher.Partition.OEM, custom.match("/x/y/z/Foo.apk").partition);
+        assertEquals(PartitionMatcher.Partition.VENDOR, custom.match("/x/z/Foo.apk").partition);
+    }
+
+    @Test
+    public void exactSegmentWinsOverWildcard() {
+        PartitionMatcher custom = new PartitionMatcher()
+                .register("/apex/*/app/", PartitionMatcher.Partition.APEX, PartitionMatcher.DirKind.APP)
+                .register("/apex/special/app/", PartitionMatcher.Partition.VENDOR, PartitionMatcher.DirKind.APP);
+        assertEquals(PartitionMatcher.Partition.VENDOR, custom.match("/apex/special/app/Foo/Foo.apk").partition);
+        assertEquals(PartitionMatcher.Partition.APEX, custom.match("/apex/other/app/Foo/Foo.apk").partition);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRelativePrefix() {
+        new PartitionMatcher().register("system/app/", PartitionMatcher.Partition.SYSTEM, PartitionMatcher.DirKind.APP);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPrefixWithoutTrailingSlash() {
+        new PartitionMatcher().register("/system/app", PartitionMatcher.Partition.SYSTEM, PartitionMatcher.DirKind.APP);
+    }
+}